@@ -0,0 +1,25 @@
+package com.lottery.cache;
+
+import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 活动变更日志条目
+ */
+@Data
+public class ActivityChange {
+    
+    /** 新增中奖记录 */
+    public static final String TYPE_DRAW = "DRAW";
+    
+    /** 结构性修改（重置、活动/奖项/人员变更），客户端需重新获取完整数据 */
+    public static final String TYPE_RELOAD = "RELOAD";
+    
+    private long version;
+    private String type;
+    private List<LotteryDataVO.WinnerInfo> winners;
+    private List<LotteryDeltaVO.PrizeCounter> prizes;
+}
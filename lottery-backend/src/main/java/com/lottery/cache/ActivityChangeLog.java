@@ -0,0 +1,422 @@
+package com.lottery.cache;
+
+import cn.hutool.core.util.StrUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lottery.common.context.TenantContext;
+import com.lottery.entity.po.Prize;
+import com.lottery.entity.po.WinnerRecord;
+import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 活动变更日志
+ * 核心作用：为每个活动维护单调递增的数据版本和只追加的变更日志，支持按 sinceVersion 返回增量数据
+ * 版本初始值取当前毫秒时间，服务重启或日志过期后重建的版本一定大于客户端持有的旧版本，客户端会被要求全量刷新
+ * 默认保存在本节点内存中；开启 lottery.change-log.redis-enabled 时保存在 Redis（Lua 脚本保证递增与追加的原子性），供多节点共享；
+ * 读取版本只 GET 版本键，活动首次读取版本时以带 TTL 的 SET NX 写入初始版本，读取日志条目只用于增量查询
+ * 变更在事务提交后记录，保证客户端拿到某版本时该版本之前的修改均已可见
+ * 同时维护租户版本（活动列表的 ETag 依据），租户下任一活动记录变更时递增
+ * Redis 追加失败时该活动（或租户）的版本标记为未知：读取版本时先补记一条全量刷新变更，
+ * 补记仍失败则返回 null，调用方不使用以版本为键的缓存和 ETag，直到补记成功使版本前进
+ */
+@Slf4j
+@Component
+public class ActivityChangeLog {
+    
+    private static final String KEY_PREFIX = "lottery:changes:";
+    
+    /** 脚本参数与返回值按原始字符串处理，不经过 RedisTemplate 的 JSON 序列化 */
+    @SuppressWarnings("rawtypes")
+    private static final RedisSerializer STRING_SERIALIZER = StringRedisSerializer.UTF_8;
+    
+    /**
+     * 追加变更：KEYS = [version, entries, base]，ARGV = [entry, initialVersion, maxEntries, ttlSeconds]
+     * 版本号由脚本写入条目 JSON 的首个字段
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then "
+            + "redis.call('SET', KEYS[1], ARGV[2]) redis.call('SET', KEYS[3], ARGV[2]) end "
+            + "local v = redis.call('INCR', KEYS[1]) "
+            + "redis.call('RPUSH', KEYS[2], '{\"version\":' .. v .. ',' .. string.sub(ARGV[1], 2)) "
+            + "if redis.call('LLEN', KEYS[2]) > tonumber(ARGV[3]) then "
+            + "local dropped = redis.call('LPOP', KEYS[2]) "
+            + "redis.call('SET', KEYS[3], tostring(cjson.decode(dropped).version)) end "
+            + "for i = 1, 3 do redis.call('EXPIRE', KEYS[i], ARGV[4]) end "
+            + "return v", Long.class);
+    
+    /**
+     * 写入初始版本：KEYS 同上，ARGV = [initialVersion, ttlSeconds]；已存在时不覆盖，返回当前版本
+     * 与追加一样设置过期时间，读取过版本但从未变更的活动不会留下永久键
+     */
+    private static final RedisScript<String> INIT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET', KEYS[1], ARGV[1], 'NX', 'EX', ARGV[2]) "
+            + "redis.call('SET', KEYS[3], ARGV[1], 'NX', 'EX', ARGV[2]) "
+            + "return redis.call('GET', KEYS[1])", String.class);
+    
+    /**
+     * 读取日志：KEYS 同上；返回 [version, base, entry...]，版本键不存在时返回空列表（不写入）
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>(
+            "local v = redis.call('GET', KEYS[1]) "
+            + "if not v then return {} end "
+            + "local result = {v, redis.call('GET', KEYS[3]) or v} "
+            + "local entries = redis.call('LRANGE', KEYS[2], 0, -1) "
+            + "for i = 1, #entries do result[#result + 1] = entries[i] end "
+            + "return result", List.class);
+    
+    /**
+     * 租户版本：KEYS = [version]，ARGV = [initialVersion, increment(1/0), ttlSeconds]
+     */
+    private static final RedisScript<Long> TENANT_VERSION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then redis.call('SET', KEYS[1], ARGV[1]) end "
+            + "if ARGV[2] == '1' then redis.call('INCR', KEYS[1]) end "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+            + "return tonumber(redis.call('GET', KEYS[1]))", Long.class);
+    
+    @Value("${lottery.change-log.max-entries:500}")
+    private int maxEntries;
+    
+    @Value("${lottery.change-log.ttl-seconds:172800}")
+    private long ttlSeconds;
+    
+    @Value("${lottery.change-log.redis-enabled:false}")
+    private boolean redisEnabled;
+    
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private final Map<String, ActivityLog> logs = new ConcurrentHashMap<>();
+    
+    /** 租户 ID -> 租户版本（活动列表用），租户下任一活动变更时递增 */
+    private final Map<String, AtomicLong> tenantVersions = new ConcurrentHashMap<>();
+    
+    /** Redis 追加变更失败、版本未前进的活动 ID */
+    private final Set<String> unknownActivities = ConcurrentHashMap.newKeySet();
+    
+    /** Redis 递增租户版本失败的租户 ID */
+    private final Set<String> unknownTenants = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * 当前版本
+     * 
+     * @return 当前版本；版本未知（变更未能记录）时返回 null，调用方不得使用以版本为键的缓存
+     */
+    public Long currentVersion(String activityId) {
+        if (useRedis()) {
+            if (!repair(activityId)) {
+                return null;
+            }
+            return redisVersion(activityId);
+        }
+        ActivityLog log = logOf(activityId);
+        synchronized (log) {
+            return log.version;
+        }
+    }
+    
+    /**
+     * 当前租户的版本（活动列表用）
+     * 
+     * @return 当前租户版本；版本未知时返回 null
+     */
+    public Long currentTenantVersion() {
+        String tenantId = StrUtil.blankToDefault(TenantContext.getTenantId(), "public");
+        if (useRedis() && unknownTenants.remove(tenantId) && tenantVersion(true) == 0) {
+            return null;
+        }
+        return tenantVersion(false);
+    }
+    
+    /**
+     * 记录中奖变更：新增中奖记录及其奖项的最新计数
+     */
+    public void recordDraw(String activityId, List<WinnerRecord> records, Collection<Prize> prizes) {
+        ActivityChange change = new ActivityChange();
+        change.setType(ActivityChange.TYPE_DRAW);
+        change.setWinners(records.stream().map(record -> {
+            LotteryDataVO.WinnerInfo info = new LotteryDataVO.WinnerInfo();
+            info.setRecordId(record.getRecordId());
+            info.setParticipantId(record.getParticipantId());
+            info.setParticipantName(record.getParticipantName());
+            info.setPrizeName(record.getPrizeName());
+            info.setGiftName(record.getGiftName());
+            info.setDrawSequence(record.getDrawSequence());
+            return info;
+        }).collect(Collectors.toList()));
+        change.setPrizes(prizes.stream().map(prize -> {
+            LotteryDeltaVO.PrizeCounter counter = new LotteryDeltaVO.PrizeCounter();
+            counter.setPrizeId(prize.getPrizeId());
+            counter.setDrawnCount(prize.getDrawnCount());
+            counter.setStatus(prize.getStatus());
+            return counter;
+        }).collect(Collectors.toList()));
+        appendAfterCommit(activityId, change);
+    }
+    
+    /**
+     * 记录结构性修改（重置、活动/奖项/人员变更），持有更早版本的客户端需全量刷新
+     */
+    public void recordReload(String activityId) {
+        ActivityChange change = new ActivityChange();
+        change.setType(ActivityChange.TYPE_RELOAD);
+        appendAfterCommit(activityId, change);
+    }
+    
+    /**
+     * 查询 sinceVersion 之后的增量
+     */
+    public LotteryDeltaVO delta(String activityId, long sinceVersion) {
+        long version;
+        long base;
+        List<ActivityChange> entries;
+        if (useRedis()) {
+            if (!repair(activityId)) {
+                // 版本未知时无法判断客户端缺少哪些变更，要求全量刷新
+                LotteryDeltaVO delta = new LotteryDeltaVO();
+                delta.setActivityId(activityId);
+                delta.setSinceVersion(sinceVersion);
+                delta.setFullReload(true);
+                delta.setWinners(new ArrayList<>());
+                delta.setPrizes(new ArrayList<>());
+                delta.setParticipants(new ArrayList<>());
+                return delta;
+            }
+            RedisLog redisLog = readRedis(activityId);
+            version = redisLog.version;
+            base = redisLog.base;
+            entries = redisLog.entries;
+        } else {
+            ActivityLog log = logOf(activityId);
+            synchronized (log) {
+                version = log.version;
+                base = log.base;
+                entries = new ArrayList<>(log.entries);
+            }
+        }
+        
+        LotteryDeltaVO delta = new LotteryDeltaVO();
+        delta.setActivityId(activityId);
+        delta.setSinceVersion(sinceVersion);
+        delta.setVersion(version);
+        delta.setFullReload(false);
+        delta.setWinners(new ArrayList<>());
+        delta.setPrizes(new ArrayList<>());
+        delta.setParticipants(new ArrayList<>());
+        
+        // 版本不在日志覆盖范围内（日志已截断、服务重启或版本来自未来）时全量刷新
+        if (sinceVersion < base || sinceVersion > version) {
+            delta.setFullReload(true);
+            return delta;
+        }
+        
+        Map<String, LotteryDeltaVO.PrizeCounter> prizes = new LinkedHashMap<>();
+        for (ActivityChange change : entries) {
+            if (change.getVersion() <= sinceVersion || change.getVersion() > version) {
+                continue;
+            }
+            if (ActivityChange.TYPE_RELOAD.equals(change.getType())) {
+                delta.setFullReload(true);
+                delta.getWinners().clear();
+                delta.getParticipants().clear();
+                return delta;
+            }
+            for (LotteryDataVO.WinnerInfo winner : change.getWinners()) {
+                delta.getWinners().add(winner);
+                LotteryDeltaVO.ParticipantFlag flag = new LotteryDeltaVO.ParticipantFlag();
+                flag.setParticipantId(winner.getParticipantId());
+                flag.setIsWinner(true);
+                delta.getParticipants().add(flag);
+            }
+            for (LotteryDeltaVO.PrizeCounter counter : change.getPrizes()) {
+                prizes.put(counter.getPrizeId(), counter);
+            }
+        }
+        delta.getPrizes().addAll(prizes.values());
+        return delta;
+    }
+    
+    private void appendAfterCommit(String activityId, ActivityChange change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    append(activityId, change);
+                }
+            });
+        } else {
+            append(activityId, change);
+        }
+    }
+    
+    private void append(String activityId, ActivityChange change) {
+        appendActivity(activityId, change);
+        // 活动列表包含活动计数，活动的任何变更都使租户版本失效
+        tenantVersion(true);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private long tenantVersion(boolean increment) {
+        String tenantId = StrUtil.blankToDefault(TenantContext.getTenantId(), "public");
+        if (useRedis()) {
+            try {
+                return redisTemplate.execute(TENANT_VERSION_SCRIPT, STRING_SERIALIZER, STRING_SERIALIZER,
+                        Collections.singletonList(KEY_PREFIX + "tenant:" + tenantId + ":version"),
+                        String.valueOf(System.currentTimeMillis()), increment ? "1" : "0", String.valueOf(ttlSeconds));
+            } catch (Exception e) {
+                if (!increment) {
+                    throw e;
+                }
+                // 版本未前进时活动列表的 ETag 会继续命中旧数据，标记为未知直到补记成功
+                unknownTenants.add(tenantId);
+                log.error("更新租户版本失败，租户版本标记为未知: tenantId={}", tenantId, e);
+                return 0;
+            }
+        }
+        AtomicLong version = tenantVersions.computeIfAbsent(tenantId, id -> new AtomicLong(System.currentTimeMillis()));
+        return increment ? version.incrementAndGet() : version.get();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void appendActivity(String activityId, ActivityChange change) {
+        if (useRedis()) {
+            try {
+                redisTemplate.execute(APPEND_SCRIPT, STRING_SERIALIZER, STRING_SERIALIZER, keys(activityId),
+                        objectMapper.writeValueAsString(change), String.valueOf(System.currentTimeMillis()),
+                        String.valueOf(maxEntries), String.valueOf(ttlSeconds));
+                unknownActivities.remove(activityId);
+            } catch (Exception e) {
+                // 版本未前进时以版本为键的缓存和 ETag 会继续返回旧数据，标记为未知，读取时补记全量刷新变更
+                unknownActivities.add(activityId);
+                log.error("记录活动变更失败，活动版本标记为未知: activityId={}, type={}", activityId, change.getType(), e);
+            }
+            return;
+        }
+        ActivityLog log = logOf(activityId);
+        synchronized (log) {
+            change.setVersion(++log.version);
+            log.entries.addLast(change);
+            if (log.entries.size() > maxEntries) {
+                log.base = log.entries.removeFirst().getVersion();
+            }
+        }
+    }
+    
+    /**
+     * 补记版本未知活动的全量刷新变更，使所有节点的版本前进、旧版本的缓存条目不再命中
+     * 
+     * @return 版本已知（无需补记或补记成功）
+     */
+    private boolean repair(String activityId) {
+        if (!unknownActivities.remove(activityId)) {
+            return true;
+        }
+        ActivityChange change = new ActivityChange();
+        change.setType(ActivityChange.TYPE_RELOAD);
+        appendActivity(activityId, change);
+        if (unknownActivities.contains(activityId)) {
+            return false;
+        }
+        tenantVersion(true);
+        log.info("活动版本已补记: activityId={}", activityId);
+        return true;
+    }
+    
+    /**
+     * 读取 Redis 中的活动版本：只 GET 版本键，不存在时写入初始版本
+     */
+    private long redisVersion(String activityId) {
+        byte[] key = (KEY_PREFIX + activityId + ":version").getBytes(StandardCharsets.UTF_8);
+        byte[] value = redisTemplate.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(key));
+        if (value != null) {
+            return Long.parseLong(new String(value, StandardCharsets.UTF_8));
+        }
+        return initRedis(activityId);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private long initRedis(String activityId) {
+        String version = redisTemplate.execute(INIT_SCRIPT, STRING_SERIALIZER, STRING_SERIALIZER, keys(activityId),
+                String.valueOf(System.currentTimeMillis()), String.valueOf(ttlSeconds));
+        return Long.parseLong(version);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private RedisLog readRedis(String activityId) {
+        List<String> result = redisTemplate.execute(READ_SCRIPT, STRING_SERIALIZER, STRING_SERIALIZER, keys(activityId));
+        RedisLog redisLog = new RedisLog();
+        if (result.isEmpty()) {
+            // 尚无版本：日志为空，覆盖范围从初始版本开始
+            redisLog.version = initRedis(activityId);
+            redisLog.base = redisLog.version;
+            redisLog.entries = new ArrayList<>();
+            return redisLog;
+        }
+        redisLog.version = Long.parseLong(result.get(0));
+        redisLog.base = Long.parseLong(result.get(1));
+        redisLog.entries = new ArrayList<>(result.size() - 2);
+        for (int i = 2; i < result.size(); i++) {
+            try {
+                redisLog.entries.add(objectMapper.readValue(result.get(i), ActivityChange.class));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("活动变更日志格式不正确: activityId=" + activityId, e);
+            }
+        }
+        return redisLog;
+    }
+    
+    private boolean useRedis() {
+        return redisEnabled && redisTemplate != null;
+    }
+    
+    private ActivityLog logOf(String activityId) {
+        return logs.computeIfAbsent(activityId, id -> new ActivityLog(System.currentTimeMillis()));
+    }
+    
+    private static List<String> keys(String activityId) {
+        String prefix = KEY_PREFIX + activityId;
+        return Arrays.asList(prefix + ":version", prefix + ":entries", prefix + ":base");
+    }
+    
+    /**
+     * 本地活动日志：base 为日志覆盖范围的起点，version 大于 base 的变更均在 entries 中
+     */
+    private static class ActivityLog {
+        private long version;
+        private long base;
+        private final Deque<ActivityChange> entries = new ArrayDeque<>();
+        
+        ActivityLog(long initialVersion) {
+            this.version = initialVersion;
+            this.base = initialVersion;
+        }
+    }
+    
+    private static class RedisLog {
+        private long version;
+        private long base;
+        private List<ActivityChange> entries;
+    }
+}
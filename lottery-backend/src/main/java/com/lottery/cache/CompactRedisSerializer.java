@@ -0,0 +1,226 @@
+package com.lottery.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 紧凑 Redis 值序列化器
+ * 已登记的值类型（抽奖数据分段、会话信息等）使用 Smile 二进制格式，不写入逐对象的 @class 类型信息：
+ * 头部只记录一次根类型（含集合元素类型），嵌套对象的类型由字段声明推断；负载超过阈值时再做 Deflate 压缩
+ * 未登记的类型（如含 Object 字段、无法由声明推断类型的对象）仍交给兜底序列化器
+ * 读取时按首字节识别格式，兼容兜底序列化器写入的历史数据
+ * 格式：MAGIC(1) + FLAGS(1) + 类型描述(writeUTF) + Smile 负载（FLAG_DEFLATED 时为压缩后的负载）
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    
+    /** 格式标识，JSON 文本不会以该字节开头 */
+    static final byte MAGIC = (byte) 0xC5;
+    static final byte FLAG_DEFLATED = 0x01;
+    
+    private static final byte[] EMPTY = new byte[0];
+    
+    private final RedisSerializer<Object> fallback;
+    private final Set<Class<?>> compactTypes;
+    private final int compressionThreshold;
+    private final ObjectMapper mapper;
+    private final JavaType objectType;
+    
+    /** 类型描述 -> 解析后的类型，描述只由本类写出，数量有限 */
+    private final Map<String, JavaType> resolvedTypes = new ConcurrentHashMap<>();
+    
+    /**
+     * @param fallback 未登记类型及历史数据使用的序列化器
+     * @param compactTypes 使用紧凑格式的值类型（字段类型必须可由声明推断）
+     * @param compressionThreshold 负载达到该字节数时压缩，小于等于 0 表示不压缩
+     */
+    public CompactRedisSerializer(RedisSerializer<Object> fallback, Set<Class<?>> compactTypes, int compressionThreshold) {
+        this.fallback = fallback;
+        this.compactTypes = Set.copyOf(compactTypes);
+        this.compressionThreshold = compressionThreshold;
+        this.mapper = new ObjectMapper(new SmileFactory())
+                .findAndRegisterModules()
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        this.objectType = mapper.getTypeFactory().constructType(Object.class);
+    }
+    
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        JavaType type = describe(value);
+        if (type == null) {
+            return fallback.serialize(value);
+        }
+        
+        try {
+            byte[] payload = mapper.writeValueAsBytes(value);
+            boolean deflated = compressionThreshold > 0 && payload.length >= compressionThreshold;
+            if (deflated) {
+                payload = deflate(payload);
+            }
+            
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 128);
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(MAGIC);
+            data.writeByte(deflated ? FLAG_DEFLATED : 0);
+            data.writeUTF(type.toCanonical());
+            data.write(payload);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new SerializationException("Could not write compact value: " + e.getMessage(), e);
+        }
+    }
+    
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        
+        try {
+            ByteArrayInputStream in = new ByteArrayInputStream(bytes);
+            DataInputStream data = new DataInputStream(in);
+            data.readByte();
+            byte flags = data.readByte();
+            JavaType type = resolve(data.readUTF());
+            
+            try (InputStream payload = (flags & FLAG_DEFLATED) != 0 ? new InflaterInputStream(in) : in) {
+                return mapper.readerFor(type).readValue(payload);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            throw new SerializationException("Could not read compact value: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 推断值的类型描述，无法用紧凑格式表示时返回 null
+     * 集合统一按 ArrayList / LinkedHashSet / LinkedHashMap 还原，Map 仅支持 String 键
+     */
+    private JavaType describe(Object value) {
+        TypeFactory types = mapper.getTypeFactory();
+        if (value instanceof List<?> list) {
+            JavaType element = describeElements(list);
+            return element == null ? null : types.constructCollectionType(ArrayList.class, element);
+        }
+        if (value instanceof Set<?> set) {
+            JavaType element = describeElements(set);
+            return element == null ? null : types.constructCollectionType(LinkedHashSet.class, element);
+        }
+        if (value instanceof Map<?, ?> map) {
+            for (Object key : map.keySet()) {
+                if (!(key instanceof String)) {
+                    return null;
+                }
+            }
+            JavaType content = describeElements(map.values());
+            return content == null ? null
+                    : types.constructMapType(LinkedHashMap.class, types.constructType(String.class), content);
+        }
+        return compactTypes.contains(value.getClass()) ? types.constructType(value.getClass()) : null;
+    }
+    
+    /**
+     * 集合元素类型：全部为同一登记类型（或同构集合），或全部为标量（按 Object 读写）
+     * 空元素和空集合不参与推断，全部为空时按 Object 处理
+     */
+    private JavaType describeElements(Collection<?> elements) {
+        JavaType result = null;
+        Class<?> lastClass = null;
+        for (Object element : elements) {
+            if (element == null || isEmptyContainer(element)) {
+                continue;
+            }
+            Class<?> elementClass = element.getClass();
+            if (elementClass == lastClass && !isContainer(element)) {
+                continue;
+            }
+            
+            JavaType type = isScalar(element) ? objectType : describe(element);
+            if (type == null || (result != null && !result.equals(type))) {
+                return null;
+            }
+            result = type;
+            lastClass = elementClass;
+        }
+        return result != null ? result : objectType;
+    }
+    
+    private JavaType resolve(String canonical) {
+        return resolvedTypes.computeIfAbsent(canonical, key -> {
+            JavaType type = mapper.getTypeFactory().constructFromCanonical(key);
+            checkAllowed(type);
+            return type;
+        });
+    }
+    
+    /**
+     * 只允许还原本类可能写出的类型，防止伪造的类型描述实例化任意类
+     */
+    private void checkAllowed(JavaType type) {
+        Class<?> raw = type.getRawClass();
+        boolean allowed = raw == Object.class || raw == String.class
+                || raw == ArrayList.class || raw == LinkedHashSet.class || raw == LinkedHashMap.class
+                || compactTypes.contains(raw);
+        if (!allowed) {
+            throw new IllegalArgumentException("type not allowed: " + type.toCanonical());
+        }
+        for (int i = 0; i < type.containedTypeCount(); i++) {
+            checkAllowed(type.containedType(i));
+        }
+    }
+    
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean;
+    }
+    
+    private static boolean isContainer(Object value) {
+        return value instanceof Collection || value instanceof Map;
+    }
+    
+    private static boolean isEmptyContainer(Object value) {
+        return (value instanceof Collection<?> collection && collection.isEmpty())
+                || (value instanceof Map<?, ?> map && map.isEmpty());
+    }
+    
+    private static byte[] deflate(byte[] payload) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 4 + 64);
+            try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+                stream.write(payload);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
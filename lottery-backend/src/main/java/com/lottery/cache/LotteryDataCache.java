@@ -0,0 +1,504 @@
+package com.lottery.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lottery.common.context.TenantContext;
+import com.lottery.entity.po.LotteryActivity;
+import com.lottery.mapper.ActivityMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 抽奖数据分段两级缓存
+ * 抽奖数据按活动、奖项、参与人员、中奖记录分段缓存（lottery:{tenantId}:{activityId}:{segment}），各段独立失效，读取时组装
+ * L1：进程内 Caffeine，按租户分区并按字节预算淘汰（TenantCacheManager，短 TTL），命中时无需反序列化；L2：Redis
+ * 分区与键中的租户取自活动记录的 tenant_id；请求的租户与活动所属租户不一致时不读写缓存，由加载时的归属校验处理
+ * 失效时删除对应分段的两级缓存，并通过 Redis 发布订阅通知其他节点清除各自的 L1
+ * 每个分段维护本地版本号，加载期间分段被失效时不回填，避免旧数据覆盖失效结果；
+ * 版本号取自全局递增序列，版本表按条数淘汰后重新创建的版本号不会与加载前取得的版本号相同
+ * L1 条目同时记录加载时调用方读到的活动数据版本（变更日志版本）：其他节点的失效消息到达前，本节点可能已读到新版本，
+ * 此时 L1 中加载时版本更早的分段可能是旧数据，按未命中处理并从 L2 重新读取（修改方在版本前进前已删除 L2）
+ * 未命中时单飞重建：同一分段在本节点只有一个请求回源，其余请求等待其结果或直接返回标记为过期的最近一次数据；
+ * 跨节点通过 Redis 锁协调，未抢到锁的节点等待持锁节点回填 L2
+ * 注意：缓存返回的是共享实例，调用方不得修改
+ */
+@Slf4j
+@Component
+public class LotteryDataCache implements MessageListener {
+    
+    public static final String KEY_PREFIX = "lottery:";
+    public static final String EVICT_CHANNEL = "lottery:cache:evict";
+    private static final String LOCK_SUFFIX = ":lock";
+    private static final long LOCK_POLL_MILLIS = 50;
+    
+    /** 仅删除自己持有的重建锁 */
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+    
+    /** 版本号序列，分段版本号的每次创建和失效都取新值 */
+    private static final AtomicLong VERSION_SEQUENCE = new AtomicLong();
+    
+    /** 当前节点标识，用于忽略自己发布的失效消息 */
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final String SEPARATOR = "|";
+    private static final String SEGMENT_SEPARATOR = ",";
+    
+    /**
+     * 缓存分段
+     */
+    public enum Segment {
+        /** 活动基本信息 */
+        ACTIVITY,
+        /** 奖项列表 */
+        PRIZES,
+        /** 参与人员列表（数据量最大、变化最少） */
+        PARTICIPANTS,
+        /** 按奖项分组的中奖记录 */
+        WINNERS
+    }
+    
+    /** 最近一次数据（lastKnown）的条目上限，L1 本身按租户字节预算淘汰 */
+    @Value("${lottery.cache.local.max-entries:800}")
+    private long localMaxEntries;
+    
+    /** 分段版本号与活动所属租户的条目上限 */
+    @Value("${lottery.cache.local.tracking-max-entries:50000}")
+    private long trackingMaxEntries;
+    
+    @Value("${lottery.cache.redis-ttl-minutes:30}")
+    private long redisTtlMinutes;
+    
+    @Value("${lottery.cache.pubsub.enabled:false}")
+    private boolean pubsubEnabled;
+    
+    @Value("${lottery.cache.stale-ttl-seconds:60}")
+    private long staleTtlSeconds;
+    
+    @Value("${lottery.cache.rebuild.lock-enabled:false}")
+    private boolean rebuildLockEnabled;
+    
+    @Value("${lottery.cache.rebuild.lock-ttl-ms:5000}")
+    private long rebuildLockTtlMillis;
+    
+    @Value("${lottery.cache.rebuild.wait-ms:3000}")
+    private long rebuildWaitMillis;
+    
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private TenantCacheManager tenantCacheManager;
+    
+    @Autowired
+    private ActivityMapper activityMapper;
+    
+    /** 最近一次成功加载的分段数据及其版本号，重建期间代替等待返回 */
+    private Cache<String, Known> lastKnown;
+    
+    /** 分段缓存键 -> 本地版本号，每次失效取新值 */
+    private Cache<String, AtomicLong> versions;
+    
+    /** 分段缓存键 -> 进行中的重建 */
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    
+    /** 活动 ID -> 活动记录中的所属租户，活动的租户不会变化 */
+    private Cache<String, String> activityTenants;
+    
+    @PostConstruct
+    public void init() {
+        lastKnown = Caffeine.newBuilder()
+                .maximumSize(localMaxEntries)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(staleTtlSeconds, 1)))
+                .build();
+        versions = Caffeine.newBuilder()
+                .maximumSize(trackingMaxEntries)
+                .build();
+        activityTenants = Caffeine.newBuilder()
+                .maximumSize(trackingMaxEntries)
+                .build();
+    }
+    
+    /**
+     * 分段读取结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Lookup<T> {
+        /** 分段数据 */
+        private final T value;
+        /** 是否为重建期间返回的过期数据 */
+        private final boolean stale;
+    }
+    
+    /**
+     * L1 条目：分段数据及读取前的活动数据版本
+     */
+    @AllArgsConstructor
+    private static class Entry {
+        private final long dataVersion;
+        private final Object data;
+    }
+    
+    @AllArgsConstructor
+    private static class Known {
+        private final long version;
+        private final Entry entry;
+    }
+    
+    /**
+     * 读取分段，不检查 L1 条目的加载版本（仅用于校验活动归属等不依赖数据新旧的场景）
+     */
+    public <T> Lookup<T> lookup(String activityId, Segment segment, Supplier<T> loader) {
+        return lookup(activityId, segment, null, loader);
+    }
+    
+    /**
+     * 读取分段：先 L1 后 L2，均未命中时加载并回填两级缓存
+     * 同一分段同时只有一个请求重建，其余请求有最近一次数据时直接返回（stale 为 true），否则等待重建结果
+     * 
+     * @param activityId 活动 ID
+     * @param segment 分段
+     * @param dataVersion 读取前取得的活动数据版本，L1 中加载时版本更早的条目按未命中处理；为 null 时不检查
+     * @param loader 从数据库加载分段数据
+     * @return 分段读取结果
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Lookup<T> lookup(String activityId, Segment segment, Long dataVersion, Supplier<T> loader) {
+        String contextTenantId = TenantContext.getTenantId();
+        String tenantId = tenantOf(activityId);
+        if (tenantId == null || (contextTenantId != null && !contextTenantId.equals(tenantId))) {
+            // 活动不存在或不属于当前租户：缓存命中会跳过归属校验，直接加载
+            return new Lookup<>(loader.get(), false);
+        }
+        String key = key(tenantId, activityId, segment);
+        // 单节点（无 Redis）时失效与版本前进在同一进程内按序发生，L1 不会落后于版本
+        long required = dataVersion != null && redisTemplate != null ? dataVersion : 0;
+        Object cached = tenantCacheManager.cache(tenantId).getIfPresent(key);
+        if (cached instanceof Entry entry && entry.dataVersion >= required) {
+            return new Lookup<>((T) entry.data, false);
+        }
+        
+        long version = versionOf(key).get();
+        CompletableFuture<Entry> flight = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            Known last = staleTtlSeconds > 0 ? lastKnown.getIfPresent(key) : null;
+            if (last != null) {
+                // 版本未变且加载时版本不早于本次读取的版本，说明只是 L1 过期，数据仍是最新的
+                return new Lookup<>((T) last.entry.data, last.version != version || last.entry.dataVersion < required);
+            }
+            return new Lookup<>((T) await(existing, tenantId, key, version, required, loader).data, false);
+        }
+        
+        try {
+            Entry rebuilt = rebuild(tenantId, key, version, required, loader);
+            flight.complete(rebuilt);
+            return new Lookup<>((T) rebuilt.data, false);
+        } catch (RuntimeException e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+    
+    /**
+     * 重建分段：先读 L2；启用重建锁时只有持锁节点回源，其余节点等待 L2 回填，超时后自行回源
+     */
+    private Entry rebuild(String tenantId, String key, long version, long dataVersion, Supplier<?> loader) {
+        if (redisTemplate == null) {
+            return load(tenantId, key, version, dataVersion, loader);
+        }
+        Object data = readRedis(key);
+        if (data != null) {
+            Entry entry = new Entry(dataVersion, data);
+            putLocal(tenantId, key, version, entry);
+            return entry;
+        }
+        
+        String lockKey = key + LOCK_SUFFIX;
+        String token = UUID.randomUUID().toString();
+        Boolean locked = tryLock(lockKey, token);
+        if (Boolean.FALSE.equals(locked)) {
+            data = awaitRedis(key, lockKey);
+            if (data != null) {
+                Entry entry = new Entry(dataVersion, data);
+                putLocal(tenantId, key, version, entry);
+                return entry;
+            }
+        }
+        try {
+            return load(tenantId, key, version, dataVersion, loader);
+        } finally {
+            if (Boolean.TRUE.equals(locked)) {
+                unlock(lockKey, token);
+            }
+        }
+    }
+    
+    /**
+     * 回源加载，加载期间未被失效时回填两级缓存
+     */
+    private Entry load(String tenantId, String key, long version, long dataVersion, Supplier<?> loader) {
+        Object loaded = loader.get();
+        Entry entry = new Entry(dataVersion, loaded);
+        if (loaded != null && putLocal(tenantId, key, version, entry) && redisTemplate != null) {
+            redisTemplate.opsForValue().set(key, loaded, redisTtlMinutes, TimeUnit.MINUTES);
+        }
+        return entry;
+    }
+    
+    /**
+     * 等待本节点进行中的重建，超时后自行回源；重建开始时的版本早于本次读取的版本时自行重建
+     */
+    private Entry await(CompletableFuture<Entry> flight, String tenantId, String key, long version, long dataVersion,
+                        Supplier<?> loader) {
+        try {
+            Entry entry = flight.get(rebuildLockTtlMillis, TimeUnit.MILLISECONDS);
+            return entry.dataVersion >= dataVersion ? entry : rebuild(tenantId, key, version, dataVersion, loader);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            log.warn("等待分段重建超时，直接回源: key={}", key);
+            return load(tenantId, key, version, dataVersion, loader);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待分段重建被中断: " + key, e);
+        }
+    }
+    
+    /**
+     * 获取跨节点重建锁
+     * 
+     * @return true 获取成功；false 锁被其他节点持有；null 未启用或 Redis 异常（直接回源）
+     */
+    private Boolean tryLock(String lockKey, String token) {
+        if (!rebuildLockEnabled) {
+            return null;
+        }
+        try {
+            return redisTemplate.opsForValue().setIfAbsent(lockKey, token, rebuildLockTtlMillis, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            log.warn("获取缓存重建锁失败: key={}, error={}", lockKey, e.getMessage());
+            return null;
+        }
+    }
+    
+    private void unlock(String lockKey, String token) {
+        try {
+            redisTemplate.execute(UNLOCK_SCRIPT, Collections.singletonList(lockKey), token);
+        } catch (Exception e) {
+            // 释放失败时锁在 TTL 到期后自动失效
+            log.warn("释放缓存重建锁失败: key={}, error={}", lockKey, e.getMessage());
+        }
+    }
+    
+    /**
+     * 等待持锁节点回填 L2；锁已释放仍未回填（持锁节点失败）或等待超时时返回 null
+     */
+    private Object awaitRedis(String key, String lockKey) {
+        long deadline = System.currentTimeMillis() + rebuildWaitMillis;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                Thread.sleep(LOCK_POLL_MILLIS);
+                Object data = readRedis(key);
+                if (data != null) {
+                    return data;
+                }
+                if (!Boolean.TRUE.equals(redisTemplate.hasKey(lockKey))) {
+                    return readRedis(key);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+    
+    /**
+     * 读取 L2，无法反序列化（如序列化格式切换、版本回退）时按未命中处理，由加载结果覆盖
+     */
+    private Object readRedis(String key) {
+        try {
+            return redisTemplate.opsForValue().get(key);
+        } catch (SerializationException e) {
+            log.warn("抽奖数据缓存无法反序列化，按未命中处理: key={}, error={}", key, e.getMessage());
+            return null;
+        }
+    }
+    
+    /**
+     * 失效活动的全部分段
+     */
+    public void evict(String activityId) {
+        evict(activityId, Segment.values());
+    }
+    
+    /**
+     * 失效抽奖结果相关分段（中奖、重置后调用）：活动中奖人数、奖项已抽数量、中奖记录
+     * 参与人员的中奖标记在读取时由中奖记录推导，无需重建参与人员分段
+     */
+    public void evictDrawResults(String activityId) {
+        evict(activityId, Segment.ACTIVITY, Segment.PRIZES, Segment.WINNERS);
+    }
+    
+    /**
+     * 失效指定分段，并通知其他节点清除 L1
+     * 在事务中调用时，提交后会再失效一次，丢弃提交前按旧数据重建的分段；
+     * 提交后的失效先于变更日志记录新版本执行，保证客户端拿到新版本时缓存中不会是旧数据
+     */
+    public void evict(String activityId, Segment... segments) {
+        String tenantId = tenantOf(activityId);
+        if (tenantId == null) {
+            // 活动记录已不存在时按当前租户失效
+            tenantId = TenantContext.getTenantId() != null ? TenantContext.getTenantId() : TenantCacheManager.DEFAULT_TENANT;
+        }
+        String owner = tenantId;
+        evictNow(owner, activityId, segments);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(owner, activityId, segments);
+                }
+                
+                @Override
+                public int getOrder() {
+                    return Ordered.HIGHEST_PRECEDENCE;
+                }
+            });
+        }
+    }
+    
+    private void evictNow(String tenantId, String activityId, Segment... segments) {
+        List<String> keys = new ArrayList<>(segments.length);
+        for (Segment segment : segments) {
+            String key = key(tenantId, activityId, segment);
+            evictLocal(tenantId, key);
+            keys.add(key);
+        }
+        if (redisTemplate == null) {
+            return;
+        }
+        redisTemplate.delete(keys);
+        if (pubsubEnabled) {
+            StringBuilder message = new StringBuilder(NODE_ID).append(SEPARATOR).append(tenantId).append(SEPARATOR)
+                    .append(activityId).append(SEPARATOR);
+            for (int i = 0; i < segments.length; i++) {
+                message.append(i > 0 ? SEGMENT_SEPARATOR : "").append(segments[i].name());
+            }
+            try {
+                redisTemplate.convertAndSend(EVICT_CHANNEL, message.toString());
+            } catch (Exception e) {
+                // 通知失败时其他节点的 L1 最多在 TTL 到期后失效
+                log.warn("发布缓存失效消息失败: activityId={}, error={}", activityId, e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * 接收其他节点的失效消息：{nodeId}|{tenantId}|{activityId}|{segment,segment}
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body == null) {
+            return;
+        }
+        String[] parts = body.toString().split("\\|", 4);
+        if (parts.length < 4 || NODE_ID.equals(parts[0])) {
+            return;
+        }
+        for (String segment : parts[3].split(SEGMENT_SEPARATOR)) {
+            evictLocal(parts[1], key(parts[1], parts[2], Segment.valueOf(segment)));
+        }
+        log.debug("收到缓存失效消息: tenantId={}, activityId={}, segments={}", parts[1], parts[2], parts[3]);
+    }
+    
+    private void evictLocal(String tenantId, String key) {
+        versionOf(key).set(VERSION_SEQUENCE.incrementAndGet());
+        Cache<String, Object> local = tenantCacheManager.cacheIfPresent(tenantId);
+        if (local != null) {
+            local.invalidate(key);
+        }
+        // 失效前开始的重建不再被后续请求复用
+        inFlight.remove(key);
+    }
+    
+    /**
+     * 版本号未变化（加载期间未被失效）时写入 L1
+     */
+    private boolean putLocal(String tenantId, String key, long version, Entry entry) {
+        AtomicLong current = versionOf(key);
+        if (current.get() != version) {
+            return false;
+        }
+        Cache<String, Object> local = tenantCacheManager.cache(tenantId);
+        local.put(key, entry);
+        // 写入期间被失效时撤销写入
+        if (current.get() != version) {
+            local.invalidate(key);
+            return false;
+        }
+        if (staleTtlSeconds > 0) {
+            lastKnown.put(key, new Known(version, entry));
+        }
+        return true;
+    }
+    
+    private AtomicLong versionOf(String key) {
+        return versions.get(key, k -> new AtomicLong(VERSION_SEQUENCE.incrementAndGet()));
+    }
+    
+    /**
+     * 活动所属租户（取自活动记录），活动不存在时返回 null
+     */
+    private String tenantOf(String activityId) {
+        String tenantId = activityTenants.getIfPresent(activityId);
+        if (tenantId != null) {
+            return tenantId;
+        }
+        LotteryActivity activity = activityMapper.selectById(activityId);
+        if (activity == null) {
+            return null;
+        }
+        tenantId = activity.getTenantId() != null ? activity.getTenantId() : TenantCacheManager.DEFAULT_TENANT;
+        activityTenants.put(activityId, tenantId);
+        return tenantId;
+    }
+    
+    private static String key(String tenantId, String activityId, Segment segment) {
+        return KEY_PREFIX + tenantId + ":" + activityId + ":" + segment.name().toLowerCase();
+    }
+}
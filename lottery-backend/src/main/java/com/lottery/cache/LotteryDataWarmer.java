@@ -0,0 +1,172 @@
+package com.lottery.cache;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lottery.common.constant.StatusConstant;
+import com.lottery.common.context.TenantContext;
+import com.lottery.entity.po.LotteryActivity;
+import com.lottery.entity.po.Tenant;
+import com.lottery.mapper.ActivityMapper;
+import com.lottery.mapper.TenantMapper;
+import com.lottery.service.ILotteryService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 抽奖数据缓存预热
+ * 活动切换为进行中（提交后）以及应用启动完成后，预加载活动、奖项、人员、中奖记录各分段，
+ * 避免主持人打开抽奖页时承担冷加载；启动时只预热开始时间在配置窗口内的活动
+ * 预热在固定大小的线程池中异步执行，不阻塞启动和请求
+ */
+@Slf4j
+@Component
+public class LotteryDataWarmer {
+    
+    @Value("${lottery.cache.warmup.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${lottery.cache.warmup.parallelism:4}")
+    private int parallelism;
+    
+    @Value("${lottery.cache.warmup.startup-window-hours:24}")
+    private long startupWindowHours;
+    
+    /** 预热通过服务读取，与正常请求走同一条缓存路径；延迟注入避免循环依赖 */
+    @Lazy
+    @Autowired
+    private ILotteryService lotteryService;
+    
+    @Autowired
+    private TenantMapper tenantMapper;
+    
+    @Autowired
+    private ActivityMapper activityMapper;
+    
+    private ExecutorService executor;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(parallelism, 1), r -> {
+            Thread thread = new Thread(r, "cache-warmer-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 活动切换为进行中时预热；在事务中调用时提交后再预热，避免读到未提交的状态
+     *
+     * @param activityId 活动 ID
+     */
+    public void warmOnActivation(String activityId) {
+        if (!enabled) {
+            return;
+        }
+        String tenantId = TenantContext.getTenantId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submit(tenantId, activityId);
+                }
+            });
+        } else {
+            submit(tenantId, activityId);
+        }
+    }
+    
+    /**
+     * 启动完成后预热各租户开始时间在窗口内（前后 startupWindowHours 小时）的未结束活动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            executor.execute(this::warmUpcomingActivities);
+        } catch (RejectedExecutionException e) {
+            log.warn("启动预热任务提交失败: {}", e.getMessage());
+        }
+    }
+    
+    private void warmUpcomingActivities() {
+        // 线程池线程可能继承了创建时请求的租户上下文
+        TenantContext.clear();
+        LocalDateTime now = LocalDateTime.now();
+        LambdaQueryWrapper<Tenant> tenantWrapper = new LambdaQueryWrapper<>();
+        tenantWrapper.select(Tenant::getTenantId)
+                     .eq(Tenant::getStatus, StatusConstant.TENANT_ACTIVE);
+        List<Tenant> tenants = tenantMapper.selectList(tenantWrapper);
+        
+        int submitted = 0;
+        for (Tenant tenant : tenants) {
+            try {
+                TenantContext.setTenantId(tenant.getTenantId());
+                LambdaQueryWrapper<LotteryActivity> activityWrapper = new LambdaQueryWrapper<>();
+                activityWrapper.select(LotteryActivity::getActivityId)
+                               .in(LotteryActivity::getStatus, StatusConstant.ACTIVITY_DRAFT, StatusConstant.ACTIVITY_ACTIVE)
+                               .between(LotteryActivity::getStartTime,
+                                       now.minusHours(startupWindowHours), now.plusHours(startupWindowHours));
+                for (LotteryActivity activity : activityMapper.selectList(activityWrapper)) {
+                    submit(tenant.getTenantId(), activity.getActivityId());
+                    submitted++;
+                }
+            } catch (Exception e) {
+                log.warn("查询待预热活动失败: tenantId={}, error={}", tenant.getTenantId(), e.getMessage());
+            } finally {
+                TenantContext.clear();
+            }
+        }
+        log.info("启动缓存预热已提交: tenants={}, activities={}", tenants.size(), submitted);
+    }
+    
+    private void submit(String tenantId, String activityId) {
+        try {
+            executor.execute(() -> warm(tenantId, activityId));
+        } catch (RejectedExecutionException e) {
+            log.warn("缓存预热任务提交失败: activityId={}, error={}", activityId, e.getMessage());
+        }
+    }
+    
+    private void warm(String tenantId, String activityId) {
+        long start = System.nanoTime();
+        try {
+            TenantContext.setTenantId(tenantId);
+            lotteryService.getLotteryData(activityId);
+            log.debug("缓存预热完成: activityId={}, costMs={}", activityId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            log.warn("缓存预热失败: activityId={}, error={}", activityId, e.getMessage());
+        } finally {
+            TenantContext.clear();
+        }
+    }
+}
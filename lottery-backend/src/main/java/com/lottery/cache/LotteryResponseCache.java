@@ -0,0 +1,188 @@
+package com.lottery.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lottery.common.context.TenantContext;
+import com.lottery.common.response.Result;
+import com.lottery.entity.vo.LotteryDataVO;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 抽奖数据响应体缓存
+ * 按活动数据版本缓存最终的响应字节（Result 包装后的 JSON，原文与 gzip 各一份），
+ * 命中时直接写入 Servlet 输出流，不再组装 LotteryDataVO、也不经过消息转换器
+ * 缓存键包含租户 ID：命中时不再经过加载数据时的租户校验，其他租户不能复用本租户生成的响应
+ * 版本号变化即换键，旧版本条目按写入过期和总字节上限淘汰；同一版本并发未命中时只生成一次
+ * 只缓存数据版本与键中版本一致的响应：组装数据时读到的版本与键不同（期间有新变更）或分段为旧数据时，只返回给本次请求
+ */
+@Slf4j
+@Component
+public class LotteryResponseCache {
+    
+    private static final String GZIP = "gzip";
+    
+    @Value("${lottery.cache.response.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${lottery.cache.response.max-bytes:268435456}")
+    private long maxBytes;
+    
+    @Value("${lottery.cache.response.ttl-seconds:60}")
+    private long ttlSeconds;
+    
+    @Value("${lottery.cache.response.gzip-min-bytes:2048}")
+    private int gzipMinBytes;
+    
+    /** 与消息转换器使用同一个 ObjectMapper，缓存的响应与正常响应一致 */
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    /** {tenantId}:{activityId}:{version} -> 响应体 */
+    private Cache<String, CachedResponse> responses;
+    
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        responses = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, CachedResponse value) -> value.weight())
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+    
+    /**
+     * 缓存的响应体
+     */
+    @Getter
+    public static class CachedResponse {
+        /** 未压缩的 JSON */
+        private final byte[] raw;
+        /** gzip 压缩后的 JSON，响应体较小时为空 */
+        private final byte[] gzip;
+        /** 是否为缓存重建期间的旧数据（不缓存，仅返回给本次及同时等待的请求） */
+        private final boolean stale;
+        /** 数据版本是否与缓存键的版本一致，不一致时不缓存 */
+        private final boolean current;
+        
+        CachedResponse(byte[] raw, byte[] gzip, boolean stale, boolean current) {
+            this.raw = raw;
+            this.gzip = gzip;
+            this.stale = stale;
+            this.current = current;
+        }
+        
+        int weight() {
+            return raw.length + (gzip != null ? gzip.length : 0);
+        }
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 获取当前租户指定版本的响应体，未命中时加载数据并序列化（加载时校验活动归属）
+     * 
+     * @param activityId 活动 ID
+     * @param version 活动数据版本
+     * @param loader 加载抽奖数据
+     * @return 响应体
+     */
+    public CachedResponse get(String activityId, long version, Supplier<LotteryDataVO> loader) {
+        String tenantId = TenantContext.getTenantId();
+        String key = (tenantId != null ? tenantId : TenantCacheManager.DEFAULT_TENANT) + ":" + activityId + ":" + version;
+        CachedResponse cached = responses.get(key, k -> build(activityId, version, loader.get()));
+        if (cached.isStale() || !cached.isCurrent()) {
+            // 旧数据或版本不符的数据只服务本轮请求，下次请求重新生成
+            responses.asMap().remove(key, cached);
+        }
+        return cached;
+    }
+    
+    /**
+     * 将响应体写入输出流：请求接受 gzip 时直接写压缩字节并设置 Content-Encoding
+     * 
+     * @param cached 响应体
+     * @param acceptEncoding 请求头 Accept-Encoding
+     * @param response Servlet 响应
+     */
+    public void write(CachedResponse cached, String acceptEncoding, HttpServletResponse response) throws IOException {
+        byte[] body = cached.getRaw();
+        if (cached.getGzip() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (acceptsGzip(acceptEncoding)) {
+                body = cached.getGzip();
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+            }
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+    
+    private CachedResponse build(String activityId, long version, LotteryDataVO data) {
+        try {
+            byte[] raw = objectMapper.writeValueAsBytes(Result.success(data));
+            byte[] gzip = raw.length >= gzipMinBytes ? gzip(raw) : null;
+            log.debug("生成抽奖数据响应缓存: activityId={}, raw={}, gzip={}",
+                    activityId, raw.length, gzip != null ? gzip.length : 0);
+            return new CachedResponse(raw, gzip, Boolean.TRUE.equals(data.getStale()),
+                    Long.valueOf(version).equals(data.getVersion()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static byte[] gzip(byte[] raw) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+        try (GZIPOutputStream stream = new GZIPOutputStream(out, 8192)) {
+            stream.write(raw);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Accept-Encoding 中包含 gzip（或 *）且 q 值不为 0
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.trim().split(";");
+            String coding = tokens[0].trim();
+            if (!GZIP.equalsIgnoreCase(coding) && !"*".equals(coding)) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < tokens.length; i++) {
+                String param = tokens[i].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    refused = param.substring(2).matches("0(\\.0*)?");
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
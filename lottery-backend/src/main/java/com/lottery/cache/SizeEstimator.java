@@ -0,0 +1,111 @@
+package com.lottery.cache;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 缓存值内存占用估算（用于按字节预算淘汰）
+ * 按对象头、引用和字符串长度粗略估算，大集合只抽样前若干个元素再按数量外推，
+ * 只反射展开本项目的类，其他类型按固定大小计
+ */
+final class SizeEstimator {
+    
+    private static final int SAMPLE_SIZE = 16;
+    private static final int MAX_DEPTH = 8;
+    private static final long OBJECT_HEADER = 16;
+    private static final long REFERENCE = 8;
+    private static final long OPAQUE_OBJECT = 64;
+    private static final String PROJECT_PACKAGE = "com.lottery.";
+    
+    private static final Map<Class<?>, Field[]> FIELDS = new ConcurrentHashMap<>();
+    
+    private SizeEstimator() {
+    }
+    
+    static long estimate(Object value) {
+        return estimate(value, 0);
+    }
+    
+    private static long estimate(Object value, int depth) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String text) {
+            return 40 + 2L * text.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof TemporalAccessor) {
+            return 48;
+        }
+        if (value instanceof byte[] bytes) {
+            return OBJECT_HEADER + bytes.length;
+        }
+        if (depth >= MAX_DEPTH) {
+            return OBJECT_HEADER;
+        }
+        if (value instanceof Collection<?> collection) {
+            return 40 + REFERENCE * collection.size() + sampled(collection, depth);
+        }
+        if (value instanceof Map<?, ?> map) {
+            return 48 + 40L * map.size() + sampled(map.keySet(), depth) + sampled(map.values(), depth);
+        }
+        if (!value.getClass().getName().startsWith(PROJECT_PACKAGE)) {
+            return OPAQUE_OBJECT;
+        }
+        
+        long size = OBJECT_HEADER;
+        for (Field field : fields(value.getClass())) {
+            size += REFERENCE;
+            if (!field.getType().isPrimitive()) {
+                try {
+                    size += estimate(field.get(value), depth + 1);
+                } catch (IllegalAccessException e) {
+                    size += OPAQUE_OBJECT;
+                }
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * 抽样前 SAMPLE_SIZE 个元素，按元素数量外推
+     */
+    private static long sampled(Collection<?> elements, int depth) {
+        int total = elements.size();
+        if (total == 0) {
+            return 0;
+        }
+        long sum = 0;
+        int seen = 0;
+        for (Object element : elements) {
+            sum += estimate(element, depth + 1);
+            if (++seen == SAMPLE_SIZE) {
+                break;
+            }
+        }
+        return sum * total / seen;
+    }
+    
+    private static Field[] fields(Class<?> type) {
+        return FIELDS.computeIfAbsent(type, t -> {
+            List<Field> fields = new ArrayList<>();
+            for (Class<?> c = t; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        fields.add(field);
+                    }
+                }
+            }
+            return fields.toArray(new Field[0]);
+        });
+    }
+}
@@ -0,0 +1,183 @@
+package com.lottery.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.lottery.entity.po.Tenant;
+import com.lottery.entity.vo.TenantCacheStatsVO;
+import com.lottery.mapper.TenantMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按租户分区的本地缓存
+ * 每个租户一个独立的 Caffeine 缓存（W-TinyLFU 淘汰，按访问频率保留热点），以估算字节数作为权重，
+ * 预算按租户存储配额（storage_quota_mb × budget-ratio）计算并限制在上下限之间，
+ * 大租户的数据只会淘汰自己的条目，不影响其他租户的热点数据
+ * 各分区预算之和超过全局上限（total-budget-mb）时按比例缩减全部分区的预算，租户数增长时本地缓存总量仍有界
+ * 无租户上下文的数据归入 public 分区，使用默认配额
+ */
+@Slf4j
+@Component
+public class TenantCacheManager {
+    
+    public static final String DEFAULT_TENANT = "public";
+    
+    private static final long MB = 1024L * 1024L;
+    
+    @Value("${lottery.cache.tenant.budget-ratio:0.05}")
+    private double budgetRatio;
+    
+    @Value("${lottery.cache.tenant.default-quota-mb:1024}")
+    private long defaultQuotaMb;
+    
+    @Value("${lottery.cache.tenant.min-budget-mb:8}")
+    private long minBudgetMb;
+    
+    @Value("${lottery.cache.tenant.max-budget-mb:256}")
+    private long maxBudgetMb;
+    
+    @Value("${lottery.cache.tenant.total-budget-mb:1024}")
+    private long totalBudgetMb;
+    
+    @Value("${lottery.cache.local.ttl-seconds:5}")
+    private long ttlSeconds;
+    
+    @Autowired
+    private TenantMapper tenantMapper;
+    
+    /** 租户 ID -> 租户缓存分区 */
+    private final Map<String, Cache<String, Object>> caches = new ConcurrentHashMap<>();
+    
+    /** 租户 ID -> 按配额计算的预算（按全局上限缩减前） */
+    private final Map<String, Long> budgets = new ConcurrentHashMap<>();
+    
+    /**
+     * 获取租户的缓存分区，首次访问时按租户配额创建
+     *
+     * @param tenantId 租户 ID，为空时使用 public 分区
+     * @return 缓存分区
+     */
+    public Cache<String, Object> cache(String tenantId) {
+        String key = normalize(tenantId);
+        Cache<String, Object> cache = caches.get(key);
+        if (cache != null) {
+            return cache;
+        }
+        // 在 computeIfAbsent 之外查询配额，避免持锁访问数据库
+        long budget = budgetOf(key);
+        boolean[] created = new boolean[1];
+        cache = caches.computeIfAbsent(key, k -> {
+            created[0] = true;
+            return create(k, budget);
+        });
+        if (created[0]) {
+            budgets.put(key, budget);
+            rebalance();
+        }
+        return cache;
+    }
+    
+    /**
+     * 获取已创建的缓存分区（失效时使用，不为此创建分区）
+     */
+    public Cache<String, Object> cacheIfPresent(String tenantId) {
+        return caches.get(normalize(tenantId));
+    }
+    
+    /**
+     * 租户套餐或存储配额变化后重新计算预算，超出新预算的条目随即被淘汰
+     */
+    public void refreshBudget(String tenantId) {
+        Cache<String, Object> cache = caches.get(normalize(tenantId));
+        if (cache == null) {
+            return;
+        }
+        long budget = budgetOf(normalize(tenantId));
+        budgets.put(normalize(tenantId), budget);
+        rebalance();
+        log.info("租户缓存预算已更新: tenantId={}, budgetBytes={}", tenantId, budget);
+    }
+    
+    /**
+     * 各租户缓存分区的容量与命中统计
+     */
+    public List<TenantCacheStatsVO> stats() {
+        List<TenantCacheStatsVO> result = new ArrayList<>(caches.size());
+        caches.forEach((tenantId, cache) -> {
+            CacheStats stats = cache.stats();
+            TenantCacheStatsVO vo = new TenantCacheStatsVO();
+            vo.setTenantId(tenantId);
+            cache.policy().eviction().ifPresent(eviction -> {
+                vo.setBudgetBytes(eviction.getMaximum());
+                vo.setUsedBytes(eviction.weightedSize().orElse(0));
+            });
+            vo.setEntries(cache.estimatedSize());
+            vo.setHitCount(stats.hitCount());
+            vo.setMissCount(stats.missCount());
+            vo.setHitRate(stats.hitRate());
+            vo.setEvictionCount(stats.evictionCount());
+            vo.setEvictionBytes(stats.evictionWeight());
+            result.add(vo);
+        });
+        return result;
+    }
+    
+    /**
+     * 按全局上限分配各分区的实际预算：预算之和未超过上限时按配额预算，否则按比例缩减
+     */
+    private synchronized void rebalance() {
+        long total = budgets.values().stream().mapToLong(Long::longValue).sum();
+        long limit = totalBudgetMb * MB;
+        double scale = total > limit ? (double) limit / total : 1.0;
+        caches.forEach((tenantId, cache) -> {
+            long budget = (long) (budgets.getOrDefault(tenantId, 0L) * scale);
+            cache.policy().eviction().ifPresent(eviction -> eviction.setMaximum(budget));
+        });
+        if (scale < 1.0) {
+            log.info("租户缓存预算之和超过全局上限，按比例缩减: tenants={}, totalBytes={}, limitBytes={}",
+                    caches.size(), total, limit);
+        }
+    }
+    
+    private Cache<String, Object> create(String tenantId, long budget) {
+        log.info("创建租户缓存分区: tenantId={}, budgetBytes={}", tenantId, budget);
+        return Caffeine.newBuilder()
+                .maximumWeight(budget)
+                .weigher((String key, Object value) -> (int) Math.min(SizeEstimator.estimate(value), Integer.MAX_VALUE))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * 预算 = 存储配额 × budget-ratio，限制在 [min-budget-mb, max-budget-mb]
+     */
+    private long budgetOf(String tenantId) {
+        long quotaMb = defaultQuotaMb;
+        if (!DEFAULT_TENANT.equals(tenantId)) {
+            try {
+                Tenant tenant = tenantMapper.selectById(tenantId);
+                if (tenant != null && tenant.getStorageQuotaMb() != null && tenant.getStorageQuotaMb() > 0) {
+                    quotaMb = tenant.getStorageQuotaMb();
+                }
+            } catch (Exception e) {
+                log.warn("查询租户存储配额失败，使用默认配额: tenantId={}, error={}", tenantId, e.getMessage());
+            }
+        }
+        long budgetMb = Math.round(quotaMb * budgetRatio);
+        return Math.max(minBudgetMb, Math.min(maxBudgetMb, budgetMb)) * MB;
+    }
+    
+    private static String normalize(String tenantId) {
+        return tenantId == null || tenantId.isEmpty() ? DEFAULT_TENANT : tenantId;
+    }
+}
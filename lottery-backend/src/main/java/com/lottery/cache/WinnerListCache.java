@@ -0,0 +1,51 @@
+package com.lottery.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lottery.entity.vo.WinnerVO;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 中奖列表缓存
+ * 以活动数据版本（ActivityChangeLog）为键的一部分：中奖、重置及活动、奖项、人员变更都会递增版本，
+ * 版本变化即换键，无需显式失效；条目写入后按 TTL 过期，被频繁读取的条目也不会超期保留
+ * 注意：缓存返回的是共享实例，调用方不得修改
+ */
+@Component
+public class WinnerListCache {
+    
+    @Value("${lottery.cache.winners.max-entries:500}")
+    private long maxEntries;
+    
+    @Value("${lottery.cache.winners.ttl-seconds:300}")
+    private long ttlSeconds;
+    
+    /** {activityId}:{version} -> 中奖列表 */
+    private Cache<String, List<WinnerVO>> winners;
+    
+    @PostConstruct
+    public void init() {
+        winners = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+    
+    /**
+     * 获取指定版本的中奖列表，未命中时加载（同一版本并发未命中时只加载一次）
+     * 
+     * @param activityId 活动 ID
+     * @param version 活动数据版本
+     * @param loader 加载中奖列表
+     * @return 中奖列表
+     */
+    public List<WinnerVO> get(String activityId, long version, Supplier<List<WinnerVO>> loader) {
+        return winners.get(activityId + ":" + version, key -> loader.get());
+    }
+}
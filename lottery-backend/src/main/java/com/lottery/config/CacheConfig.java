@@ -0,0 +1,33 @@
+package com.lottery.config;
+
+import com.lottery.cache.LotteryDataCache;
+import com.lottery.mybatis.TenantSchemaResolver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 缓存配置类
+ * 开启 lottery.cache.pubsub.enabled 时订阅缓存失效频道（抽奖数据、租户 Schema），用于多节点间同步清除本地缓存
+ */
+@Configuration
+@ConditionalOnProperty(name = "lottery.cache.pubsub.enabled", havingValue = "true")
+public class CacheConfig {
+    
+    /**
+     * 配置缓存失效消息监听容器
+     */
+    @Bean
+    public RedisMessageListenerContainer cacheEvictListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                     LotteryDataCache lotteryDataCache,
+                                                                     TenantSchemaResolver tenantSchemaResolver) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(lotteryDataCache, new ChannelTopic(LotteryDataCache.EVICT_CHANNEL));
+        container.addMessageListener(tenantSchemaResolver, new ChannelTopic(TenantSchemaResolver.EVICT_CHANNEL));
+        return container;
+    }
+}
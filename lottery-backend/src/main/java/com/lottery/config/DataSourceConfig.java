@@ -0,0 +1,61 @@
+package com.lottery.config;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.spring.boot3.autoconfigure.DruidDataSourceBuilder;
+import com.lottery.datasource.TenantRoutingDataSource;
+import com.lottery.mybatis.SearchPathFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 数据源配置类
+ * 开启 lottery.datasource.tenant-pools.enabled 时，在共享的 Druid 连接池之外按租户套餐创建专属连接池，
+ * 由 TenantRoutingDataSource 按租户上下文路由；未开启时使用 Druid 自动配置的单一连接池
+ */
+@Configuration
+@ConditionalOnProperty(name = "lottery.datasource.tenant-pools.enabled", havingValue = "true")
+public class DataSourceConfig {
+    
+    private static final String PLANS_PROPERTY = "lottery.datasource.tenant-pools.plans";
+    
+    /**
+     * 共享连接池，沿用 spring.datasource / spring.datasource.druid 配置
+     */
+    @Bean(initMethod = "init")
+    public DruidDataSource sharedDataSource() {
+        return DruidDataSourceBuilder.create().build();
+    }
+    
+    /**
+     * 租户路由数据源，作为应用的主数据源（事务管理器、MyBatis、JdbcTemplate 均使用它）
+     */
+    @Bean
+    @Primary
+    public TenantRoutingDataSource dataSource(
+            DruidDataSource sharedDataSource,
+            SearchPathFilter searchPathFilter,
+            Environment environment,
+            @Value("${lottery.datasource.tenant-pools.min-idle:1}") int minIdle,
+            @Value("${lottery.datasource.tenant-pools.max-pools:20}") int maxPools,
+            @Value("${lottery.datasource.tenant-pools.idle-timeout-minutes:10}") long idleTimeoutMinutes,
+            @Value("${lottery.datasource.tenant-pools.reclaim-interval-seconds:60}") long reclaimIntervalSeconds) {
+        // 套餐名不区分大小写
+        Map<String, Integer> plans = Binder.get(environment)
+                .bind(PLANS_PROPERTY, Bindable.mapOf(String.class, Integer.class))
+                .orElse(Map.of())
+                .entrySet().stream()
+                .collect(Collectors.toMap(entry -> entry.getKey().toUpperCase(Locale.ROOT), Map.Entry::getValue));
+        return new TenantRoutingDataSource(sharedDataSource, searchPathFilter, plans, minIdle, maxPools,
+                idleTimeoutMinutes * 60_000L, reclaimIntervalSeconds * 1000L);
+    }
+}
@@ -0,0 +1,37 @@
+package com.lottery.config;
+
+import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.lottery.mybatis.SchemaQualifyInnerInterceptor;
+import com.lottery.mybatis.TenantSchemaResolver;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * MyBatis 配置类
+ * 租户隔离方式由 lottery.tenant.mode 选择：
+ * search-path（默认）由 SchemaInterceptor 切换会话 search_path；
+ * qualified 由 SchemaQualifyInnerInterceptor 将租户表改写为 {schema}.{table}，不修改会话状态
+ */
+@Configuration
+public class MybatisConfig {
+    
+    /**
+     * Schema 限定改写模式的 MyBatis-Plus 拦截器
+     */
+    @Bean
+    @ConditionalOnProperty(name = "lottery.tenant.mode", havingValue = "qualified")
+    public MybatisPlusInterceptor mybatisPlusInterceptor(
+            TenantSchemaResolver tenantSchemaResolver,
+            @Value("${lottery.tenant.tables:users,lottery_activities,prizes,participants,winner_records,operation_logs}")
+            String[] tenantTables,
+            @Value("${lottery.tenant.sql-template-cache-size:2000}") long templateCacheSize) {
+        MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        interceptor.addInnerInterceptor(
+                new SchemaQualifyInnerInterceptor(tenantSchemaResolver, Set.of(tenantTables), templateCacheSize));
+        return interceptor;
+    }
+}
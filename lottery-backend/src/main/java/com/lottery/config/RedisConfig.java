@@ -4,29 +4,56 @@ import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.lottery.cache.CompactRedisSerializer;
+import com.lottery.entity.vo.LotteryDataVO;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.util.Set;
+
 /**
  * Redis 配置类
  */
 @Configuration
 public class RedisConfig {
     
+    /** 值序列化方式：compact（Smile 二进制 + 压缩）或 json（GenericJackson2JsonRedisSerializer） */
+    public static final String SERIALIZER_COMPACT = "compact";
+    
+    /**
+     * 使用紧凑格式的值类型：抽奖数据分段（lottery:）
+     * 会话信息（session:）为标量 Map，无需登记即可使用紧凑格式
+     */
+    public static final Set<Class<?>> COMPACT_TYPES = Set.of(
+        LotteryDataVO.class,
+        LotteryDataVO.ActivityInfo.class,
+        LotteryDataVO.PrizeInfo.class,
+        LotteryDataVO.ParticipantInfo.class,
+        LotteryDataVO.WinnerInfo.class
+    );
+    
     /**
      * 配置 RedisTemplate
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       @Value("${lottery.redis.serializer:json}") String serializer,
+                                                       @Value("${lottery.redis.compression-threshold-bytes:16384}") int compressionThreshold) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         
         // 使用 GenericJackson2JsonRedisSerializer 来序列化和反序列化 redis 的 value 值
         GenericJackson2JsonRedisSerializer genericJackson2JsonRedisSerializer = new GenericJackson2JsonRedisSerializer();
+        // compact 模式下登记类型改用紧凑格式，其余类型及历史数据仍由 GenericJackson2JsonRedisSerializer 处理
+        RedisSerializer<Object> valueSerializer = SERIALIZER_COMPACT.equalsIgnoreCase(serializer)
+            ? new CompactRedisSerializer(genericJackson2JsonRedisSerializer, COMPACT_TYPES, compressionThreshold)
+            : genericJackson2JsonRedisSerializer;
         
         // 使用 StringRedisSerializer 来序列化和反序列化 redis 的 key 值
         StringRedisSerializer stringRedisSerializer = new StringRedisSerializer();
@@ -35,10 +62,10 @@ public class RedisConfig {
         template.setKeySerializer(stringRedisSerializer);
         // hash 的 key 也采用 String 的序列化方式
         template.setHashKeySerializer(stringRedisSerializer);
-        // value 序列化方式采用 GenericJackson2JsonRedisSerializer
-        template.setValueSerializer(genericJackson2JsonRedisSerializer);
-        // hash 的 value 序列化方式采用 GenericJackson2JsonRedisSerializer
-        template.setHashValueSerializer(genericJackson2JsonRedisSerializer);
+        // value 序列化方式
+        template.setValueSerializer(valueSerializer);
+        // hash 的 value 序列化方式
+        template.setHashValueSerializer(valueSerializer);
         
         template.afterPropertiesSet();
         
@@ -1,20 +1,29 @@
 package com.lottery.controller;
 
+import com.lottery.cache.LotteryResponseCache;
 import com.lottery.common.response.Result;
 import com.lottery.entity.dto.WinnerSaveDTO;
 import com.lottery.entity.po.LotteryActivity;
 import com.lottery.entity.po.Participant;
 import com.lottery.entity.po.Prize;
 import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import com.lottery.entity.vo.LotteryResetVO;
 import com.lottery.entity.vo.WinnerVO;
+import com.lottery.idempotency.IdempotencyStore;
 import com.lottery.service.ILotteryService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.util.List;
 
 /**
@@ -28,35 +37,110 @@ public class LotteryController {
     @Autowired
     private ILotteryService lotteryService;
     
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private LotteryResponseCache lotteryResponseCache;
+    
     /**
      * 获取抽奖初始化数据
      */
-    @Operation(summary = "获取抽奖初始化数据", description = "获取活动、奖项、参与人员、中奖记录等完整数据")
+    @Operation(summary = "获取抽奖初始化数据",
+               description = "获取活动、奖项、参与人员、中奖记录等完整数据；携带 sinceVersion 时只返回该版本之后的增量（LotteryDeltaVO）；"
+                       + "完整数据支持 If-None-Match 条件请求，数据未变化时返回 304")
     @GetMapping("/activities/{activityId}/data")
     // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")  // 开发环境暂时禁用
-    public Result<LotteryDataVO> getLotteryData(@PathVariable String activityId) {
+    public Result<?> getLotteryData(@PathVariable String activityId,
+                                    @RequestParam(required = false) Long sinceVersion,
+                                    WebRequest webRequest,
+                                    HttpServletResponse response) throws IOException {
+        if (sinceVersion != null) {
+            LotteryDeltaVO delta = lotteryService.getLotteryDelta(activityId, sinceVersion);
+            return Result.success(delta);
+        }
+        Long version = lotteryService.getDataVersion(activityId);
+        if (version != null && notModified(webRequest, "v" + version)) {
+            return null;
+        }
+        if (version != null && lotteryResponseCache.isEnabled()) {
+            // 按版本缓存的响应字节直接写出，命中时不组装数据也不做 JSON 序列化
+            LotteryResponseCache.CachedResponse cached = lotteryResponseCache.get(activityId, version,
+                    () -> lotteryService.getLotteryData(activityId));
+            if (cached.isStale()) {
+                noStore(webRequest);
+            }
+            lotteryResponseCache.write(cached, webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING), response);
+            return null;
+        }
         LotteryDataVO data = lotteryService.getLotteryData(activityId);
+        if (data != null && Boolean.TRUE.equals(data.getStale())) {
+            // 旧数据不能与当前版本的 ETag 一起被缓存
+            noStore(webRequest);
+        }
         return Result.success(data);
     }
     
     /**
      * 保存中奖记录
      */
-    @Operation(summary = "保存中奖记录", description = "保存单个中奖记录，更新相关状态")
+    @Operation(summary = "保存中奖记录", description = "保存单个中奖记录，更新相关状态；携带 Idempotency-Key 请求头时重复请求直接返回首次结果")
     @PostMapping("/winners")
     // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR')")  // 开发环境暂时禁用
-    public Result<WinnerVO> saveWinner(@Valid @RequestBody WinnerSaveDTO winnerSaveDTO) {
-        WinnerVO winner = lotteryService.saveWinner(winnerSaveDTO);
+    public Result<WinnerVO> saveWinner(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                       @Valid @RequestBody WinnerSaveDTO winnerSaveDTO) {
+        WinnerVO winner = idempotencyStore.execute("winner", idempotencyKey, winnerSaveDTO,
+                () -> lotteryService.saveWinner(winnerSaveDTO));
         return Result.success(winner);
     }
     
+    /**
+     * 批量保存中奖记录
+     */
+    @Operation(summary = "批量保存中奖记录", description = "在一个事务中保存同一活动的多条中奖记录；携带 Idempotency-Key 请求头时重复请求直接返回首次结果")
+    @PostMapping("/winners/batch")
+    // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR')")  // 开发环境暂时禁用
+    public Result<List<WinnerVO>> saveWinners(@RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                              @RequestBody List<WinnerSaveDTO> winnerSaveDTOs) {
+        List<WinnerVO> winners = idempotencyStore.execute("winners-batch", idempotencyKey, winnerSaveDTOs,
+                () -> lotteryService.saveWinners(winnerSaveDTOs));
+        return Result.success(winners);
+    }
+    
+    /**
+     * 服务端抽奖
+     */
+    @Operation(summary = "服务端抽奖", description = "在服务端从未中奖人员中随机抽取指定人数，并在同一事务中保存中奖记录")
+    @PostMapping("/activities/{activityId}/prizes/{prizeId}/draw")
+    // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR')")  // 开发环境暂时禁用
+    public Result<List<WinnerVO>> drawWinners(@PathVariable String activityId,
+                                              @PathVariable String prizeId,
+                                              @RequestParam(defaultValue = "1") Integer count) {
+        List<WinnerVO> winners = lotteryService.drawWinners(activityId, prizeId, count);
+        return Result.success(winners);
+    }
+    
+    /**
+     * 整场抽奖
+     */
+    @Operation(summary = "整场抽奖", description = "按抽奖顺序一次抽完活动所有奖项的剩余名额，并在同一事务中批量保存中奖记录")
+    @PostMapping("/activities/{activityId}/draw-all")
+    // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR')")  // 开发环境暂时禁用
+    public Result<List<WinnerVO>> drawAll(@PathVariable String activityId) {
+        List<WinnerVO> winners = lotteryService.drawAll(activityId);
+        return Result.success(winners);
+    }
+    
     /**
      * 查询中奖记录列表
      */
     @Operation(summary = "查询中奖记录列表", description = "查询指定活动的所有中奖记录")
     @GetMapping("/activities/{activityId}/winners")
     // @PreAuthorize("hasAnyRole('ADMIN', 'OPERATOR', 'VIEWER')")  // 开发环境暂时禁用
-    public Result<List<WinnerVO>> getWinners(@PathVariable String activityId) {
+    public Result<List<WinnerVO>> getWinners(@PathVariable String activityId, WebRequest webRequest) {
+        if (notModified(webRequest, activityEtag(activityId))) {
+            return null;
+        }
         List<WinnerVO> winners = lotteryService.getWinners(activityId);
         return Result.success(winners);
     }
@@ -67,9 +151,9 @@ public class LotteryController {
     @Operation(summary = "重置抽奖", description = "清空所有中奖记录，重置活动状态（仅ADMIN权限）")
     @PostMapping("/activities/{activityId}/reset")
     // @PreAuthorize("hasRole('ADMIN')")  // 开发环境暂时禁用
-    public Result<Void> resetLottery(@PathVariable String activityId) {
-        lotteryService.resetLottery(activityId);
-        return Result.success();
+    public Result<LotteryResetVO> resetLottery(@PathVariable String activityId) {
+        LotteryResetVO result = lotteryService.resetLottery(activityId);
+        return Result.success(result);
     }
     
     /**
@@ -77,9 +161,9 @@ public class LotteryController {
      */
     @Operation(summary = "撤销已结束活动", description = "将已结束的活动恢复为进行中状态，删除所有中奖记录")
     @PostMapping("/activities/{activityId}/revoke")
-    public Result<Void> revokeActivity(@PathVariable String activityId) {
-        lotteryService.revokeActivity(activityId);
-        return Result.success();
+    public Result<LotteryResetVO> revokeActivity(@PathVariable String activityId) {
+        LotteryResetVO result = lotteryService.revokeActivity(activityId);
+        return Result.success(result);
     }
     
     // ==================== 活动管理 ====================
@@ -89,7 +173,11 @@ public class LotteryController {
      */
     @Operation(summary = "获取活动列表", description = "获取当前租户的所有活动")
     @GetMapping("/activities")
-    public Result<List<LotteryActivity>> getActivities() {
+    public Result<List<LotteryActivity>> getActivities(WebRequest webRequest) {
+        Long version = lotteryService.getActivitiesVersion();
+        if (version != null && notModified(webRequest, "t" + version)) {
+            return null;
+        }
         List<LotteryActivity> activities = lotteryService.getActivities();
         return Result.success(activities);
     }
@@ -133,7 +221,10 @@ public class LotteryController {
      */
     @Operation(summary = "获取奖项列表", description = "获取指定活动的所有奖项")
     @GetMapping("/activities/{activityId}/prizes")
-    public Result<List<Prize>> getPrizes(@PathVariable String activityId) {
+    public Result<List<Prize>> getPrizes(@PathVariable String activityId, WebRequest webRequest) {
+        if (notModified(webRequest, activityEtag(activityId))) {
+            return null;
+        }
         List<Prize> prizes = lotteryService.getPrizes(activityId);
         return Result.success(prizes);
     }
@@ -177,7 +268,10 @@ public class LotteryController {
      */
     @Operation(summary = "获取参会人员列表", description = "获取指定活动的所有参会人员")
     @GetMapping("/activities/{activityId}/participants")
-    public Result<List<Participant>> getParticipants(@PathVariable String activityId) {
+    public Result<List<Participant>> getParticipants(@PathVariable String activityId, WebRequest webRequest) {
+        if (notModified(webRequest, activityEtag(activityId))) {
+            return null;
+        }
         List<Participant> participants = lotteryService.getParticipants(activityId);
         return Result.success(participants);
     }
@@ -213,4 +307,38 @@ public class LotteryController {
         lotteryService.deleteParticipant(participantId);
         return Result.success();
     }
+    
+    /**
+     * 活动级 ETag：活动数据版本在活动、奖项、人员、中奖记录任一变更后递增；版本未知时为 null（不做条件请求）
+     * 读取版本前校验活动归属，其他租户的请求不会得到 ETag 或 304
+     */
+    private String activityEtag(String activityId) {
+        Long version = lotteryService.getDataVersion(activityId);
+        return version != null ? "v" + version : null;
+    }
+    
+    /**
+     * 条件请求校验：写入 ETag，If-None-Match 命中时设置 304 并返回 true
+     * <p>
+     * Spring Security 默认下发 no-store，浏览器会丢弃响应而无法复用 ETag；
+     * 预先写入 no-cache（可缓存但每次需带 ETag 校验）后 Security 不再覆盖缓存头。
+     */
+    private boolean notModified(WebRequest webRequest, String etag) {
+        if (etag == null) {
+            return false;
+        }
+        if (webRequest instanceof ServletWebRequest servletWebRequest) {
+            HttpServletResponse response = servletWebRequest.getResponse();
+            if (response != null) {
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            }
+        }
+        return webRequest.checkNotModified(etag);
+    }
+    
+    private void noStore(WebRequest webRequest) {
+        if (webRequest instanceof ServletWebRequest servletWebRequest && servletWebRequest.getResponse() != null) {
+            servletWebRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        }
+    }
 }
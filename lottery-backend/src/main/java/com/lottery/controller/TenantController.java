@@ -3,6 +3,8 @@ package com.lottery.controller;
 import com.lottery.common.response.Result;
 import com.lottery.entity.dto.TenantStatusDTO;
 import com.lottery.entity.po.Tenant;
+import com.lottery.entity.vo.TenantCacheStatsVO;
+import com.lottery.entity.vo.TenantMigrationProgressVO;
 import com.lottery.entity.vo.TenantVO;
 import com.lottery.service.ITenantService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -35,6 +37,36 @@ public class TenantController {
         return Result.success(tenants);
     }
     
+    /**
+     * 获取各租户本地缓存统计
+     */
+    @Operation(summary = "获取租户缓存统计", description = "各租户本地缓存的预算、占用、命中率与淘汰情况")
+    @GetMapping("/cache-stats")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public Result<List<TenantCacheStatsVO>> getCacheStats() {
+        return Result.success(tenantService.getCacheStats());
+    }
+    
+    /**
+     * 开始租户 Schema 迁移
+     */
+    @Operation(summary = "开始租户 Schema 迁移", description = "按版本对所有租户 Schema 并发执行迁移脚本，从上次记录的版本继续")
+    @PostMapping("/migrations")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public Result<TenantMigrationProgressVO> startSchemaMigration() {
+        return Result.success(tenantService.startSchemaMigration());
+    }
+    
+    /**
+     * 获取租户 Schema 迁移进度
+     */
+    @Operation(summary = "获取租户 Schema 迁移进度", description = "本节点最近一次迁移的进度及各版本的 Schema 数量")
+    @GetMapping("/migrations/progress")
+    @PreAuthorize("hasRole('SUPER_ADMIN')")
+    public Result<TenantMigrationProgressVO> getSchemaMigrationProgress() {
+        return Result.success(tenantService.getSchemaMigrationProgress());
+    }
+    
     /**
      * 创建租户
      */
@@ -0,0 +1,283 @@
+package com.lottery.datasource;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.lottery.common.context.TenantContext;
+import com.lottery.mybatis.SearchPathFilter;
+import com.lottery.mybatis.TenantSchemaResolver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 租户路由数据源
+ * 按 TenantContext 将连接请求路由到租户专属的小连接池，连接在建立时即切换到租户 Schema（SearchPathFilter），
+ * 使用期间不再逐条语句切换 search_path；单个租户的高峰只会占满自己的连接池，不会挤占其他租户
+ * 专属连接池的大小由 tenant_registry.subscription_plan 对应的配置决定，未配置的套餐、停用的租户、
+ * 无租户上下文的请求以及超出连接池数量上限时使用共享连接池
+ * 空闲超过 idle-timeout 且没有借出连接的专属连接池会被回收；选中的专属连接池在借出连接前被回收或失效关闭时改用共享连接池
+ */
+@Slf4j
+public class TenantRoutingDataSource extends AbstractRoutingDataSource {
+    
+    private static final String POOL_NAME_PREFIX = "tenant-";
+    private static final String SELECT_SQL =
+            "SELECT schema_name, subscription_plan, status FROM public.tenant_registry WHERE tenant_id = ?::uuid";
+    
+    private final DruidDataSource shared;
+    private final JdbcTemplate registry;
+    private final SearchPathFilter searchPathFilter;
+    private final Map<String, Integer> planMaxActive;
+    private final int minIdle;
+    private final int maxPools;
+    private final long idleTimeoutMillis;
+    
+    /** 租户 ID -> 路由结果（专属连接池或共享连接池） */
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    
+    /** 连接池名称序号，同一租户先后创建的连接池名称不同，固定 Schema 的登记互不影响 */
+    private final AtomicInteger poolSequence = new AtomicInteger();
+    
+    /** 已创建及正在创建的专属连接池数量：创建前原子预占，关闭时释放，并发创建也不会超过 maxPools */
+    private final AtomicInteger poolCount = new AtomicInteger();
+    
+    private final ScheduledExecutorService reclaimer;
+    
+    /**
+     * 路由结果
+     */
+    private static class Route {
+        /** 专属连接池，为空时使用共享连接池 */
+        final DruidDataSource pool;
+        volatile long lastUsed = System.currentTimeMillis();
+        
+        Route(DruidDataSource pool) {
+            this.pool = pool;
+        }
+    }
+    
+    /**
+     * @param shared 共享连接池，同时用于查询租户信息
+     * @param searchPathFilter 登记专属连接池的固定 Schema
+     * @param planMaxActive 套餐 -> 专属连接池最大连接数（0 表示使用共享连接池）
+     * @param minIdle 专属连接池最小空闲连接数
+     * @param maxPools 专属连接池数量上限
+     * @param idleTimeoutMillis 专属连接池空闲回收时间
+     * @param reclaimIntervalMillis 回收检查间隔
+     */
+    public TenantRoutingDataSource(DruidDataSource shared, SearchPathFilter searchPathFilter,
+                                   Map<String, Integer> planMaxActive, int minIdle, int maxPools,
+                                   long idleTimeoutMillis, long reclaimIntervalMillis) {
+        this.shared = shared;
+        this.registry = new JdbcTemplate(shared);
+        this.searchPathFilter = searchPathFilter;
+        this.planMaxActive = planMaxActive;
+        this.minIdle = minIdle;
+        this.maxPools = maxPools;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        setTargetDataSources(Collections.emptyMap());
+        setDefaultTargetDataSource(shared);
+        
+        reclaimer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "tenant-pool-reclaimer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reclaimer.scheduleWithFixedDelay(this::reclaimIdle, reclaimIntervalMillis, reclaimIntervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String tenantId = TenantContext.getTenantId();
+        return TenantSchemaResolver.hasTenant(tenantId) ? tenantId : null;
+    }
+    
+    @Override
+    protected DataSource determineTargetDataSource() {
+        String tenantId = (String) determineCurrentLookupKey();
+        if (tenantId == null) {
+            return shared;
+        }
+        Route route = routes.get(tenantId);
+        if (route == null) {
+            route = createRoute(tenantId);
+            if (route == null) {
+                return shared;
+            }
+            Route existing = routes.putIfAbsent(tenantId, route);
+            if (existing != null) {
+                close(tenantId, route);
+                route = existing;
+            }
+        }
+        route.lastUsed = System.currentTimeMillis();
+        // 刚被回收或失效的连接池不再使用
+        return route.pool != null && !route.pool.isClosed() ? route.pool : shared;
+    }
+    
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            return fallback(target, e).getConnection();
+        }
+    }
+    
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            return target.getConnection(username, password);
+        } catch (SQLException e) {
+            return fallback(target, e).getConnection(username, password);
+        }
+    }
+    
+    /**
+     * 选中专属连接池到借出连接之间，连接池可能被回收或失效关闭，此时改用共享连接池；其他错误原样抛出
+     */
+    private DataSource fallback(DataSource target, SQLException e) throws SQLException {
+        if (target != shared && target instanceof DruidDataSource pool && pool.isClosed()) {
+            log.debug("租户连接池已关闭，改用共享连接池: pool={}", pool.getName());
+            return shared;
+        }
+        throw e;
+    }
+    
+    /**
+     * 租户套餐、状态或 Schema 变化后移除路由并关闭专属连接池，下次访问按新配置重建；
+     * 在事务中调用时提交后再移除，避免关闭当前事务正在使用的连接池或按未提交的数据重建
+     */
+    public void evict(String tenantId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictNow(tenantId);
+                }
+            });
+        } else {
+            evictNow(tenantId);
+        }
+    }
+    
+    private void evictNow(String tenantId) {
+        Route route = routes.remove(tenantId);
+        if (route != null && route.pool != null) {
+            close(tenantId, route);
+        }
+    }
+    
+    /**
+     * 查询租户套餐并按需创建专属连接池；查询失败时返回 null（本次使用共享连接池，不缓存）
+     */
+    private Route createRoute(String tenantId) {
+        Map<String, Object> tenant;
+        try {
+            tenant = registry.queryForMap(SELECT_SQL, tenantId);
+        } catch (EmptyResultDataAccessException e) {
+            return new Route(null);
+        } catch (Exception e) {
+            log.warn("查询租户连接池配置失败，使用共享连接池: tenantId={}, error={}", tenantId, e.getMessage());
+            return null;
+        }
+        
+        String plan = (String) tenant.get("subscription_plan");
+        int maxActive = plan != null ? planMaxActive.getOrDefault(plan.toUpperCase(Locale.ROOT), 0) : 0;
+        if (maxActive <= 0 || !"ACTIVE".equals(tenant.get("status"))) {
+            return new Route(null);
+        }
+        if (!reservePool()) {
+            log.warn("专属连接池数量已达上限，使用共享连接池: tenantId={}, maxPools={}", tenantId, maxPools);
+            return new Route(null);
+        }
+        
+        String schemaName = (String) tenant.get("schema_name");
+        DruidDataSource pool = shared.cloneDruidDataSource();
+        pool.setName(POOL_NAME_PREFIX + tenantId + "-" + poolSequence.incrementAndGet());
+        pool.setMaxActive(maxActive);
+        pool.setMinIdle(Math.min(minIdle, maxActive));
+        pool.setInitialSize(Math.min(minIdle, maxActive));
+        searchPathFilter.registerHomeSchema(pool.getName(), schemaName);
+        try {
+            pool.init();
+        } catch (Exception e) {
+            searchPathFilter.unregisterHomeSchema(pool.getName());
+            pool.close();
+            poolCount.decrementAndGet();
+            log.warn("创建租户连接池失败，使用共享连接池: tenantId={}, error={}", tenantId, e.getMessage());
+            return null;
+        }
+        log.info("创建租户连接池: tenantId={}, schema={}, plan={}, maxActive={}", tenantId, schemaName, plan, maxActive);
+        return new Route(pool);
+    }
+    
+    /**
+     * 预占一个专属连接池名额，检查与计数在同一次 CAS 中完成
+     */
+    private boolean reservePool() {
+        int count;
+        do {
+            count = poolCount.get();
+            if (count >= maxPools) {
+                return false;
+            }
+        } while (!poolCount.compareAndSet(count, count + 1));
+        return true;
+    }
+    
+    /**
+     * 回收空闲的路由：专属连接池需同时没有借出的连接
+     */
+    private void reclaimIdle() {
+        long deadline = System.currentTimeMillis() - idleTimeoutMillis;
+        routes.forEach((tenantId, route) -> {
+            if (route.lastUsed >= deadline || (route.pool != null && route.pool.getActiveCount() > 0)) {
+                return;
+            }
+            if (routes.remove(tenantId, route) && route.pool != null) {
+                close(tenantId, route);
+                log.info("回收空闲租户连接池: tenantId={}", tenantId);
+            }
+        });
+    }
+    
+    private void close(String tenantId, Route route) {
+        if (route.pool == null) {
+            return;
+        }
+        try {
+            route.pool.close();
+        } catch (Exception e) {
+            log.warn("关闭租户连接池失败: tenantId={}, error={}", tenantId, e.getMessage());
+        } finally {
+            searchPathFilter.unregisterHomeSchema(route.pool.getName());
+            poolCount.decrementAndGet();
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        reclaimer.shutdownNow();
+        routes.forEach(this::close);
+        routes.clear();
+    }
+}
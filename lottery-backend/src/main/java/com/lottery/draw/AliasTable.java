@@ -0,0 +1,64 @@
+package com.lottery.draw;
+
+import java.util.Random;
+
+/**
+ * Vose 别名表
+ * 核心作用：O(n) 构建后以 O(1) 按权重随机采样下标
+ */
+final class AliasTable {
+    
+    private final double[] prob;
+    private final int[] alias;
+    
+    /**
+     * @param weights 权重（均为正数）
+     */
+    AliasTable(double[] weights) {
+        int n = weights.length;
+        this.prob = new double[n];
+        this.alias = new int[n];
+        
+        double sum = 0;
+        for (double w : weights) {
+            sum += w;
+        }
+        double[] scaled = new double[n];
+        int[] small = new int[n];
+        int[] large = new int[n];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < n; i++) {
+            scaled[i] = weights[i] * n / sum;
+            if (scaled[i] < 1.0) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        while (smallSize > 0 && largeSize > 0) {
+            int less = small[--smallSize];
+            int more = large[--largeSize];
+            prob[less] = scaled[less];
+            alias[less] = more;
+            scaled[more] = scaled[more] + scaled[less] - 1.0;
+            if (scaled[more] < 1.0) {
+                small[smallSize++] = more;
+            } else {
+                large[largeSize++] = more;
+            }
+        }
+        // 剩余项的概率理论上为 1，浮点误差统一修正
+        while (largeSize > 0) {
+            prob[large[--largeSize]] = 1.0;
+        }
+        while (smallSize > 0) {
+            prob[small[--smallSize]] = 1.0;
+        }
+    }
+    
+    int sample(Random random) {
+        int column = random.nextInt(prob.length);
+        return random.nextDouble() < prob[column] ? column : alias[column];
+    }
+}
@@ -0,0 +1,154 @@
+package com.lottery.draw;
+
+import java.util.Random;
+
+/**
+ * 部门上限约束采样器
+ * 候选池只保留合格人员：等概率模式用下标数组 O(1) 交换删除，加权模式用别名表拒绝采样；
+ * 部门达到上限时一次性移出该部门全部成员，之后的每次抽取都不会再命中该部门，避免反复重试
+ */
+final class ConstrainedSampler {
+    
+    private final int[] items;
+    private final double[] weights;
+    private final int[] departments;
+    private final int[] departmentCounts;
+    private final int cap;
+    
+    /** 部门 -> 成员位置（按部门分桶，CSR 结构） */
+    private final int[] memberStart;
+    private final int[] members;
+    
+    /** 等概率模式：存活位置数组及位置在数组中的下标 */
+    private int[] live;
+    private int[] liveIndex;
+    private int liveSize;
+    
+    /** 加权模式 */
+    private WeightedSampler weighted;
+    
+    /**
+     * @param items 候选项
+     * @param weights 与候选项一一对应的权重，为 null 时等概率
+     * @param departments 与候选项一一对应的部门编号，负数表示无部门（不受上限约束）
+     * @param departmentCounts 各部门已中奖人数，抽取过程中会累加
+     * @param cap 每个部门的中奖上限，负数表示不限
+     */
+    ConstrainedSampler(int[] items, double[] weights, int[] departments, int[] departmentCounts, int cap) {
+        this.items = items;
+        this.weights = weights;
+        this.departments = departments;
+        this.departmentCounts = departmentCounts;
+        this.cap = cap;
+        
+        int departmentSize = departmentCounts.length;
+        this.memberStart = new int[departmentSize + 1];
+        for (int department : departments) {
+            if (department >= 0) {
+                memberStart[department + 1]++;
+            }
+        }
+        for (int d = 0; d < departmentSize; d++) {
+            memberStart[d + 1] += memberStart[d];
+        }
+        this.members = new int[memberStart[departmentSize]];
+        int[] cursor = new int[departmentSize];
+        for (int i = 0; i < departments.length; i++) {
+            int d = departments[i];
+            if (d >= 0) {
+                members[memberStart[d] + cursor[d]++] = i;
+            }
+        }
+        
+        if (weights == null) {
+            live = new int[items.length];
+            liveIndex = new int[items.length];
+            for (int i = 0; i < items.length; i++) {
+                live[i] = i;
+                liveIndex[i] = i;
+            }
+            liveSize = items.length;
+        } else {
+            weighted = new WeightedSampler(items, weights);
+        }
+        
+        // 已达上限的部门直接移出
+        if (cap >= 0) {
+            for (int d = 0; d < departmentSize; d++) {
+                if (departmentCounts[d] >= cap) {
+                    removeDepartment(d);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 满足规则的最大可抽取人数
+     */
+    int capacity() {
+        int free = 0;
+        int[] perDepartment = new int[departmentCounts.length];
+        for (int i = 0; i < items.length; i++) {
+            if (weights != null && !(weights[i] > 0)) {
+                continue;
+            }
+            int d = departments[i];
+            if (d < 0 || cap < 0) {
+                free++;
+            } else {
+                perDepartment[d]++;
+            }
+        }
+        for (int d = 0; d < perDepartment.length; d++) {
+            free += Math.min(perDepartment[d], Math.max(cap - departmentCounts[d], 0));
+        }
+        return free;
+    }
+    
+    int[] sample(int count, Random random) {
+        if (count > capacity()) {
+            throw new IllegalArgumentException("满足规则的可抽取人员不足: count=" + count);
+        }
+        int[] picked = new int[count];
+        for (int k = 0; k < count; k++) {
+            int position;
+            if (weighted != null) {
+                position = weighted.pick(random);
+            } else {
+                position = live[random.nextInt(liveSize)];
+                removeUniform(position);
+            }
+            picked[k] = items[position];
+            
+            int d = departments[position];
+            if (d >= 0) {
+                departmentCounts[d]++;
+                if (cap >= 0 && departmentCounts[d] >= cap) {
+                    removeDepartment(d);
+                }
+            }
+        }
+        return picked;
+    }
+    
+    private void removeDepartment(int department) {
+        for (int m = memberStart[department]; m < memberStart[department + 1]; m++) {
+            if (weighted != null) {
+                weighted.remove(members[m]);
+            } else {
+                removeUniform(members[m]);
+            }
+        }
+    }
+    
+    private void removeUniform(int position) {
+        int index = liveIndex[position];
+        if (index < 0) {
+            return;
+        }
+        int last = live[--liveSize];
+        live[index] = last;
+        liveIndex[last] = index;
+        liveIndex[position] = -1;
+    }
+}
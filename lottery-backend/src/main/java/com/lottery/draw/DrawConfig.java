@@ -0,0 +1,212 @@
+package com.lottery.draw;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.toolkit.support.SFunction;
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.po.Participant;
+import com.lottery.entity.po.Prize;
+import lombok.Getter;
+
+import java.util.*;
+
+/**
+ * 活动抽奖配置 - 解析自 lottery_activities.config_json 的 draw 节点
+ * 示例：{"draw": {"mode": "WEIGHTED", "weightField": "tickets",
+ *        "rules": {"excludeDepartments": ["总裁办"], "excludeEmployeeNos": ["E0001"],
+ *                  "departmentCaps": [{"prizeLevel": 1, "max": 2}, {"max": 5}]}}}
+ * 加权模式下权重取自 participants.extra_info 中的 weightField 字段：
+ * 缺失或无法解析时按 1 计算，小于等于 0 时不参与抽奖
+ * 部门上限按奖项计数，匹配优先级：prizeId > prizeLevel > 未指定（所有奖项）
+ */
+@Getter
+public class DrawConfig {
+    
+    public static final String MODE_UNIFORM = "UNIFORM";
+    public static final String MODE_WEIGHTED = "WEIGHTED";
+    
+    private static final String DEFAULT_WEIGHT_FIELD = "weight";
+    private static final double DEFAULT_WEIGHT = 1.0;
+    
+    private static final DrawConfig UNIFORM = new DrawConfig(MODE_UNIFORM, DEFAULT_WEIGHT_FIELD,
+            Collections.emptySet(), Collections.emptySet(), Collections.emptyList());
+    
+    private final String mode;
+    private final String weightField;
+    private final Set<String> excludeDepartments;
+    private final Set<String> excludeEmployeeNos;
+    private final List<DepartmentCap> departmentCaps;
+    
+    private DrawConfig(String mode, String weightField, Set<String> excludeDepartments,
+                       Set<String> excludeEmployeeNos, List<DepartmentCap> departmentCaps) {
+        this.mode = mode;
+        this.weightField = weightField;
+        this.excludeDepartments = excludeDepartments;
+        this.excludeEmployeeNos = excludeEmployeeNos;
+        this.departmentCaps = departmentCaps;
+    }
+    
+    /**
+     * 解析活动配置，未配置 draw 节点时为等概率模式
+     */
+    public static DrawConfig parse(String configJson) {
+        if (StrUtil.isBlank(configJson)) {
+            return UNIFORM;
+        }
+        JSONObject draw;
+        try {
+            draw = JSONUtil.parseObj(configJson).getJSONObject("draw");
+        } catch (Exception e) {
+            throw new BizException("活动配置格式不正确");
+        }
+        if (draw == null) {
+            return UNIFORM;
+        }
+        String mode = StrUtil.blankToDefault(draw.getStr("mode"), MODE_UNIFORM).toUpperCase();
+        if (!MODE_UNIFORM.equals(mode) && !MODE_WEIGHTED.equals(mode)) {
+            throw new BizException("不支持的抽奖模式: " + mode);
+        }
+        
+        Set<String> excludeDepartments = new HashSet<>();
+        Set<String> excludeEmployeeNos = new HashSet<>();
+        List<DepartmentCap> departmentCaps = new ArrayList<>();
+        JSONObject rules = draw.getJSONObject("rules");
+        if (rules != null) {
+            JSONArray departments = rules.getJSONArray("excludeDepartments");
+            if (departments != null) {
+                excludeDepartments.addAll(departments.toList(String.class));
+            }
+            JSONArray employeeNos = rules.getJSONArray("excludeEmployeeNos");
+            if (employeeNos != null) {
+                excludeEmployeeNos.addAll(employeeNos.toList(String.class));
+            }
+            JSONArray caps = rules.getJSONArray("departmentCaps");
+            if (caps != null) {
+                for (int i = 0; i < caps.size(); i++) {
+                    JSONObject cap = caps.getJSONObject(i);
+                    Integer max = cap.getInt("max");
+                    if (max == null || max < 0) {
+                        throw new BizException("部门中奖上限配置不正确");
+                    }
+                    departmentCaps.add(new DepartmentCap(cap.getStr("prizeId"), cap.getInt("prizeLevel"), max));
+                }
+            }
+        }
+        return new DrawConfig(mode, StrUtil.blankToDefault(draw.getStr("weightField"), DEFAULT_WEIGHT_FIELD),
+                excludeDepartments, excludeEmployeeNos, departmentCaps);
+    }
+    
+    public boolean isWeighted() {
+        return MODE_WEIGHTED.equals(mode);
+    }
+    
+    /**
+     * 是否配置了排除或部门上限规则
+     */
+    public boolean hasRules() {
+        return !excludeDepartments.isEmpty() || !excludeEmployeeNos.isEmpty() || !departmentCaps.isEmpty();
+    }
+    
+    /**
+     * 奖项的部门中奖上限
+     * 
+     * @return 上限人数，未配置时返回 -1
+     */
+    public int capFor(Prize prize) {
+        DepartmentCap byLevel = null;
+        DepartmentCap byDefault = null;
+        for (DepartmentCap cap : departmentCaps) {
+            if (cap.getPrizeId() != null) {
+                if (cap.getPrizeId().equals(prize.getPrizeId())) {
+                    return cap.getMax();
+                }
+            } else if (cap.getPrizeLevel() != null) {
+                if (byLevel == null && cap.getPrizeLevel().equals(prize.getPrizeLevel())) {
+                    byLevel = cap;
+                }
+            } else if (byDefault == null) {
+                byDefault = cap;
+            }
+        }
+        if (byLevel != null) {
+            return byLevel.getMax();
+        }
+        return byDefault != null ? byDefault.getMax() : -1;
+    }
+    
+    /**
+     * 是否被排除规则剔除
+     */
+    public boolean isExcluded(Participant participant) {
+        return (participant.getDepartment() != null && excludeDepartments.contains(participant.getDepartment()))
+                || (participant.getEmployeeNo() != null && excludeEmployeeNos.contains(participant.getEmployeeNo()));
+    }
+    
+    /**
+     * 读取参与人员权重
+     */
+    public double weightOf(String extraInfo) {
+        if (StrUtil.isBlank(extraInfo)) {
+            return DEFAULT_WEIGHT;
+        }
+        try {
+            Double weight = JSONUtil.parseObj(extraInfo).getDouble(weightField);
+            if (weight == null || weight.isNaN() || weight.isInfinite()) {
+                return DEFAULT_WEIGHT;
+            }
+            return Math.max(weight, 0);
+        } catch (Exception e) {
+            return DEFAULT_WEIGHT;
+        }
+    }
+    
+    /**
+     * 批量读取参与人员权重（与列表顺序一致）
+     */
+    public double[] weightsOf(List<Participant> participants) {
+        double[] weights = new double[participants.size()];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = weightOf(participants.get(i).getExtraInfo());
+        }
+        return weights;
+    }
+    
+    /**
+     * 抽奖所需的参与人员列（ID、姓名、调用方指定的列，以及抽奖模式与规则需要的列）
+     */
+    @SafeVarargs
+    public final SFunction<Participant, ?>[] participantColumns(SFunction<Participant, ?>... extra) {
+        List<SFunction<Participant, ?>> columns = new ArrayList<>();
+        columns.add(Participant::getParticipantId);
+        columns.add(Participant::getName);
+        columns.addAll(Arrays.asList(extra));
+        if (isWeighted()) {
+            columns.add(Participant::getExtraInfo);
+        }
+        if (hasRules()) {
+            columns.add(Participant::getDepartment);
+            columns.add(Participant::getEmployeeNo);
+        }
+        @SuppressWarnings("unchecked")
+        SFunction<Participant, ?>[] array = columns.toArray(new SFunction[0]);
+        return array;
+    }
+    
+    /**
+     * 部门中奖上限规则
+     */
+    @Getter
+    public static class DepartmentCap {
+        private final String prizeId;
+        private final Integer prizeLevel;
+        private final int max;
+        
+        DepartmentCap(String prizeId, Integer prizeLevel, int max) {
+            this.prizeId = prizeId;
+            this.prizeLevel = prizeLevel;
+            this.max = max;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.lottery.draw;
+
+import com.lottery.common.exception.BizException;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * 抽奖引擎
+ * 核心算法：在未中奖人员下标池上做部分 Fisher–Yates 洗牌，抽取 N 人只需 O(N) 次交换
+ * 加权模式：每轮构建一次 Vose 别名表，单次采样 O(1)，已中奖者以拒绝采样剔除
+ * 规则约束：只在合格候选中抽取，部门达到上限时整体移出候选池
+ */
+public final class DrawEngine {
+    
+    private static final Random RANDOM = new SecureRandom();
+    
+    private DrawEngine() {
+    }
+    
+    /**
+     * 从 [0, poolSize) 中无放回随机抽取 count 个下标
+     * 
+     * @param poolSize 候选池大小
+     * @param count 抽取数量
+     * @return 中奖下标（按抽出顺序）
+     */
+    public static int[] draw(int poolSize, int count) {
+        return draw(poolSize, count, RANDOM);
+    }
+    
+    /**
+     * 从 [0, poolSize) 中无放回随机抽取 count 个下标（指定随机源）
+     */
+    public static int[] draw(int poolSize, int count, Random random) {
+        if (count < 0 || count > poolSize) {
+            throw new IllegalArgumentException("抽取数量超出候选池大小: count=" + count + ", poolSize=" + poolSize);
+        }
+        int[] pool = new int[poolSize];
+        for (int i = 0; i < poolSize; i++) {
+            pool[i] = i;
+        }
+        shuffle(pool, count, random);
+        int[] picked = new int[count];
+        System.arraycopy(pool, 0, picked, 0, count);
+        return picked;
+    }
+    
+    /**
+     * 按权重从候选池中无放回抽取 count 个下标
+     * 
+     * @param weights 候选权重（下标即候选池下标），非正数的候选不会被抽中
+     * @param count 抽取数量
+     * @return 中奖下标（按抽出顺序）
+     */
+    public static int[] drawWeighted(double[] weights, int count) {
+        return drawWeighted(weights, count, RANDOM);
+    }
+    
+    /**
+     * 按权重无放回抽取（指定随机源）
+     */
+    public static int[] drawWeighted(double[] weights, int count, Random random) {
+        int[] items = new int[weights.length];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = i;
+        }
+        return drawWeighted(items, weights, count, random);
+    }
+    
+    /**
+     * 按权重从指定候选项中无放回抽取（默认随机源）
+     */
+    public static int[] drawWeighted(int[] items, double[] weights, int count) {
+        return drawWeighted(items, weights, count, RANDOM);
+    }
+    
+    /**
+     * 按权重从指定候选项中无放回抽取
+     * 
+     * @param items 候选项
+     * @param weights 与候选项一一对应的权重
+     * @param count 抽取数量
+     * @return 抽中的候选项（按抽出顺序）
+     */
+    public static int[] drawWeighted(int[] items, double[] weights, int count, Random random) {
+        if (count < 0) {
+            throw new IllegalArgumentException("抽取数量不能为负数: count=" + count);
+        }
+        return new WeightedSampler(items, weights).sample(count, random);
+    }
+    
+    /**
+     * 带部门上限约束的无放回抽取
+     * 
+     * @param items 合格候选项（已剔除排除规则命中的人员）
+     * @param weights 与候选项一一对应的权重，为 null 时等概率
+     * @param departments 与候选项一一对应的部门编号，负数表示无部门
+     * @param departmentCounts 各部门已中奖人数，抽取后会累加
+     * @param cap 每个部门的中奖上限，负数表示不限
+     * @param count 抽取数量
+     * @return 抽中的候选项（按抽出顺序）
+     */
+    public static int[] drawConstrained(int[] items, double[] weights, int[] departments,
+                                        int[] departmentCounts, int cap, int count) {
+        ConstrainedSampler sampler = new ConstrainedSampler(items, weights, departments, departmentCounts, cap);
+        if (count > sampler.capacity()) {
+            throw new BizException("满足抽奖规则的人员不足，无法抽取");
+        }
+        return sampler.sample(count, RANDOM);
+    }
+    
+    /**
+     * 可参与加权抽取的候选数量（权重为正）
+     */
+    public static int countEligible(double[] weights) {
+        int count = 0;
+        for (double w : weights) {
+            if (w > 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 部分洗牌（默认随机源）
+     */
+    public static void shuffle(int[] pool, int count) {
+        shuffle(pool, count, RANDOM);
+    }
+    
+    /**
+     * 部分洗牌：执行后 pool 的前 count 个元素即为随机抽出的结果
+     */
+    public static void shuffle(int[] pool, int count, Random random) {
+        int n = pool.length;
+        for (int i = 0; i < count; i++) {
+            int j = i + random.nextInt(n - i);
+            int tmp = pool[i];
+            pool[i] = pool[j];
+            pool[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.lottery.draw;
+
+import com.lottery.entity.po.Participant;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 编译后的抽奖规则
+ * 核心作用：将部门字符串映射为紧凑编号、排除规则预计算为位图（均按参与人员下标），
+ * 抽取时每次规则判断为 O(1) 的数组访问，不再逐个比较 Participant.department
+ */
+public class DrawRules {
+    
+    private final DrawConfig config;
+    
+    /** 部门名称 -> 部门编号 */
+    private final Map<String, Integer> departmentIds = new HashMap<>();
+    
+    /** 参与人员下标 -> 部门编号（无部门为 -1） */
+    private final int[] departmentOf;
+    
+    /** 被排除的参与人员（按参与人员下标） */
+    private final BitSet excluded;
+    
+    private DrawRules(DrawConfig config, List<Participant> participants) {
+        this.config = config;
+        int size = participants.size();
+        this.departmentOf = new int[size];
+        this.excluded = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Participant p = participants.get(i);
+            departmentOf[i] = p.getDepartment() == null ? -1
+                    : departmentIds.computeIfAbsent(p.getDepartment(), d -> departmentIds.size());
+            if (config.isExcluded(p)) {
+                excluded.set(i);
+            }
+        }
+    }
+    
+    /**
+     * 按参与人员列表编译规则，列表下标即参与人员下标
+     */
+    public static DrawRules compile(DrawConfig config, List<Participant> participants) {
+        return new DrawRules(config, participants);
+    }
+    
+    public int departmentOf(int participantIndex) {
+        return departmentOf[participantIndex];
+    }
+    
+    /**
+     * 创建部门计数器（按部门编号）
+     */
+    public int[] newDepartmentCounts() {
+        return new int[departmentIds.size()];
+    }
+    
+    /**
+     * 按部门名称累加计数，候选池中不存在的部门忽略
+     */
+    public void countDepartments(int[] departmentCounts, Collection<String> departments) {
+        for (String department : departments) {
+            Integer id = department != null ? departmentIds.get(department) : null;
+            if (id != null) {
+                departmentCounts[id]++;
+            }
+        }
+    }
+    
+    /**
+     * 在候选人员中按规则抽取
+     * 
+     * @param candidates 候选参与人员下标
+     * @param weights 按参与人员下标的权重，为 null 时等概率
+     * @param departmentCounts 当前奖项各部门已中奖人数，抽取后会累加
+     * @param cap 部门中奖上限，-1 表示不限
+     * @param count 抽取人数
+     * @return 中奖参与人员下标
+     */
+    public int[] draw(int[] candidates, double[] weights, int[] departmentCounts, int cap, int count) {
+        int size = 0;
+        int[] items = new int[candidates.length];
+        for (int candidate : candidates) {
+            if (!excluded.get(candidate)) {
+                items[size++] = candidate;
+            }
+        }
+        int[] eligible = new int[size];
+        int[] departments = new int[size];
+        double[] eligibleWeights = weights != null ? new double[size] : null;
+        for (int i = 0; i < size; i++) {
+            eligible[i] = items[i];
+            departments[i] = departmentOf[items[i]];
+            if (weights != null) {
+                eligibleWeights[i] = weights[items[i]];
+            }
+        }
+        return DrawEngine.drawConstrained(eligible, eligibleWeights, departments, departmentCounts, cap, count);
+    }
+    
+    public DrawConfig getConfig() {
+        return config;
+    }
+}
@@ -0,0 +1,331 @@
+package com.lottery.draw;
+
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.dto.WinnerSaveDTO;
+import com.lottery.entity.po.LotteryActivity;
+import com.lottery.entity.po.Participant;
+import com.lottery.entity.po.Prize;
+import com.lottery.entity.po.WinnerRecord;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 抽奖会话 - 进行中活动的内存抽奖状态
+ * 核心作用：中奖校验与分配在内存中完成，中奖记录由 DrawSessionManager 异步批量回写数据库
+ */
+public class DrawSession {
+    
+    @Getter
+    private final String activityId;
+    
+    @Getter
+    private final String tenantId;
+    
+    @Getter
+    private final String activityName;
+    
+    /** 活动创建人，回写失败的记录写入操作日志时作为操作人 */
+    @Getter
+    private final String createdBy;
+    
+    /** 参与人员紧凑索引：下标 -> ID / 姓名 */
+    private final String[] participantIds;
+    private final String[] participantNames;
+    private final Map<String, Integer> participantIndex;
+    
+    /** 加权模式下的参与人员权重（按参与人员下标），等概率模式为 null */
+    private final double[] weights;
+    
+    /** 编译后的抽奖规则，未配置规则时为 null */
+    private final DrawRules rules;
+    
+    /** 奖项 ID -> 各部门已中奖人数（仅配置规则时维护） */
+    private final Map<String, int[]> departmentCounts = new HashMap<>();
+    
+    /** 已中奖人员位图（按参与人员下标） */
+    private final BitSet winners;
+    
+    /** 奖项 ID -> 奖项名额 */
+    private final Map<String, PrizeSlot> prizes;
+    
+    /** 待回写数据库的中奖记录 */
+    private final Deque<WinnerRecord> pending = new ArrayDeque<>();
+    
+    /** 回写锁：与分配使用不同的锁，回写数据库期间不阻塞内存分配 */
+    final Object flushLock = new Object();
+    
+    /** 连续回写失败次数 */
+    private final AtomicInteger flushFailures = new AtomicInteger();
+    
+    /** 会话关闭后不再接受新的中奖分配 */
+    private boolean closed;
+    
+    /**
+     * @param activity 活动
+     * @param participants 参与人员（配置规则时需包含部门与工号）
+     * @param prizeList 奖项
+     * @param existingWinners 已有中奖记录（仅用于初始化部门计数，需包含参与人员 ID 与奖项 ID）
+     */
+    public DrawSession(LotteryActivity activity, List<Participant> participants, List<Prize> prizeList,
+                       List<WinnerRecord> existingWinners) {
+        this.activityId = activity.getActivityId();
+        this.tenantId = activity.getTenantId();
+        this.activityName = activity.getActivityName();
+        this.createdBy = activity.getCreatedBy();
+        
+        int size = participants.size();
+        this.participantIds = new String[size];
+        this.participantNames = new String[size];
+        this.participantIndex = new HashMap<>(size * 4 / 3 + 1);
+        this.winners = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            Participant p = participants.get(i);
+            participantIds[i] = p.getParticipantId();
+            participantNames[i] = p.getName();
+            participantIndex.put(p.getParticipantId(), i);
+            if (Boolean.TRUE.equals(p.getIsWinner())) {
+                winners.set(i);
+            }
+        }
+        DrawConfig drawConfig = DrawConfig.parse(activity.getConfigJson());
+        this.weights = drawConfig.isWeighted() ? drawConfig.weightsOf(participants) : null;
+        this.rules = drawConfig.hasRules() ? DrawRules.compile(drawConfig, participants) : null;
+        
+        this.prizes = new HashMap<>();
+        for (Prize prize : prizeList) {
+            prizes.put(prize.getPrizeId(), new PrizeSlot(prize, rules != null ? drawConfig.capFor(prize) : -1));
+        }
+        if (rules != null) {
+            for (WinnerRecord winner : existingWinners) {
+                Integer index = participantIndex.get(winner.getParticipantId());
+                if (index != null && prizes.containsKey(winner.getPrizeId())) {
+                    countDepartment(winner.getPrizeId(), index);
+                }
+            }
+        }
+    }
+    
+    /**
+     * 分配一批中奖者（全部成功或全部失败）
+     * 
+     * @param dtos 中奖记录信息，必须属于当前活动
+     * @param now 当前时间
+     * @return 中奖记录；会话已关闭时返回 null，调用方应改走数据库路径
+     */
+    public synchronized List<WinnerRecord> assign(List<WinnerSaveDTO> dtos, LocalDateTime now) {
+        if (closed) {
+            return null;
+        }
+        
+        // 1. 全量校验，不修改状态
+        int[] indexes = new int[dtos.size()];
+        BitSet batch = new BitSet();
+        Map<String, Integer> drawnByPrize = new HashMap<>();
+        for (int i = 0; i < dtos.size(); i++) {
+            WinnerSaveDTO dto = dtos.get(i);
+            if (!activityId.equals(dto.getActivityId())) {
+                throw new BizException("参数不合法：批量保存的中奖记录必须属于同一活动");
+            }
+            Integer index = participantIndex.get(dto.getParticipantId());
+            PrizeSlot slot = prizes.get(dto.getPrizeId());
+            if (index == null || slot == null) {
+                throw new BizException("参数不合法：奖项或参与人员不属于当前活动");
+            }
+            if (winners.get(index)) {
+                throw new BizException("该人员已中奖，不能重复中奖");
+            }
+            if (batch.get(index)) {
+                throw new BizException("参数不合法：同一人员不能重复中奖");
+            }
+            batch.set(index);
+            indexes[i] = index;
+            drawnByPrize.merge(dto.getPrizeId(), 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : drawnByPrize.entrySet()) {
+            PrizeSlot slot = prizes.get(entry.getKey());
+            if (entry.getValue() > slot.remaining()) {
+                throw new BizException("该奖项名额已满: " + slot.getPrizeName());
+            }
+        }
+        
+        // 2. 分配
+        List<WinnerRecord> records = new ArrayList<>(dtos.size());
+        for (int i = 0; i < dtos.size(); i++) {
+            WinnerSaveDTO dto = dtos.get(i);
+            PrizeSlot slot = prizes.get(dto.getPrizeId());
+            slot.drawnCount.incrementAndGet();
+            winners.set(indexes[i]);
+            countDepartment(slot.getPrizeId(), indexes[i]);
+            records.add(buildRecord(slot, indexes[i],
+                    dto.getDrawTime() != null ? dto.getDrawTime() : now,
+                    dto.getDrawSequence(), dto.getRemarks(), now));
+        }
+        pending.addAll(records);
+        return records;
+    }
+    
+    /**
+     * 从未中奖人员中随机抽取中奖者（等概率：部分 Fisher–Yates；加权：别名表；配置规则时只在合格人员中抽取）
+     * 
+     * @param prizeId 奖项 ID
+     * @param count 抽取人数
+     * @param now 当前时间
+     * @return 中奖记录；会话已关闭时返回 null，调用方应改走数据库路径
+     */
+    public synchronized List<WinnerRecord> draw(String prizeId, int count, LocalDateTime now) {
+        if (closed) {
+            return null;
+        }
+        PrizeSlot slot = prizes.get(prizeId);
+        if (slot == null) {
+            throw new BizException("参数不合法：奖项不属于当前活动");
+        }
+        if (count > slot.remaining()) {
+            throw new BizException("抽取人数超过奖项剩余名额");
+        }
+        
+        int size = participantIds.length;
+        int available = size - winners.cardinality();
+        if (count > available) {
+            throw new BizException("未中奖人员不足，无法抽取");
+        }
+        int[] pool = new int[available];
+        int k = 0;
+        for (int i = winners.nextClearBit(0); i < size; i = winners.nextClearBit(i + 1)) {
+            pool[k++] = i;
+        }
+        int[] picked;
+        if (rules != null) {
+            picked = rules.draw(pool, weights, departmentCountsOf(prizeId), slot.getCap(), count);
+        } else if (weights != null) {
+            double[] poolWeights = new double[available];
+            for (int i = 0; i < available; i++) {
+                poolWeights[i] = weights[pool[i]];
+            }
+            if (count > DrawEngine.countEligible(poolWeights)) {
+                throw new BizException("未中奖人员不足，无法抽取");
+            }
+            picked = DrawEngine.drawWeighted(pool, poolWeights, count);
+        } else {
+            DrawEngine.shuffle(pool, count);
+            picked = pool;
+        }
+        
+        List<WinnerRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int sequence = slot.drawnCount.incrementAndGet();
+            winners.set(picked[i]);
+            records.add(buildRecord(slot, picked[i], now, sequence, null, now));
+        }
+        pending.addAll(records);
+        return records;
+    }
+    
+    /**
+     * 奖项总名额（奖项不在会话中时返回 null）
+     */
+    public Integer getTotalQuota(String prizeId) {
+        PrizeSlot slot = prizes.get(prizeId);
+        return slot != null ? slot.getTotalQuota() : null;
+    }
+    
+    /**
+     * 取出全部待回写记录
+     */
+    synchronized List<WinnerRecord> drainPending() {
+        List<WinnerRecord> records = new ArrayList<>(pending);
+        pending.clear();
+        return records;
+    }
+    
+    /**
+     * 回写失败时将记录放回队首，保持原有顺序
+     */
+    synchronized void requeue(List<WinnerRecord> records) {
+        for (int i = records.size() - 1; i >= 0; i--) {
+            pending.addFirst(records.get(i));
+        }
+    }
+    
+    synchronized void close() {
+        closed = true;
+    }
+    
+    synchronized boolean isClosed() {
+        return closed;
+    }
+    
+    synchronized boolean hasPending() {
+        return !pending.isEmpty();
+    }
+    
+    int recordFlushFailure() {
+        return flushFailures.incrementAndGet();
+    }
+    
+    void resetFlushFailures() {
+        flushFailures.set(0);
+    }
+    
+    private int[] departmentCountsOf(String prizeId) {
+        return departmentCounts.computeIfAbsent(prizeId, id -> rules.newDepartmentCounts());
+    }
+    
+    private void countDepartment(String prizeId, int participantIndex) {
+        if (rules == null) {
+            return;
+        }
+        int department = rules.departmentOf(participantIndex);
+        if (department >= 0) {
+            departmentCountsOf(prizeId)[department]++;
+        }
+    }
+    
+    private WinnerRecord buildRecord(PrizeSlot slot, int participantIndex, LocalDateTime drawTime,
+                                     Integer drawSequence, String remarks, LocalDateTime now) {
+        WinnerRecord record = new WinnerRecord();
+        record.setRecordId(UUID.randomUUID().toString());
+        record.setActivityId(activityId);
+        record.setPrizeId(slot.getPrizeId());
+        record.setParticipantId(participantIds[participantIndex]);
+        record.setParticipantName(participantNames[participantIndex]);
+        record.setPrizeName(slot.getPrizeName());
+        record.setGiftName(slot.getGiftName());
+        record.setDrawTime(drawTime);
+        record.setDrawSequence(drawSequence);
+        record.setRemarks(remarks);
+        record.setCreatedAt(now);
+        return record;
+    }
+    
+    /**
+     * 奖项名额
+     */
+    @Getter
+    public static class PrizeSlot {
+        private final String prizeId;
+        private final String prizeName;
+        private final String giftName;
+        private final int totalQuota;
+        private final AtomicInteger drawnCount;
+        
+        /** 部门中奖上限，-1 表示不限 */
+        private final int cap;
+        
+        PrizeSlot(Prize prize, int cap) {
+            this.cap = cap;
+            this.prizeId = prize.getPrizeId();
+            this.prizeName = prize.getPrizeName();
+            this.giftName = prize.getGiftName();
+            this.totalQuota = prize.getTotalQuota();
+            this.drawnCount = new AtomicInteger(prize.getDrawnCount() != null ? prize.getDrawnCount() : 0);
+        }
+        
+        public int remaining() {
+            return totalQuota - drawnCount.get();
+        }
+    }
+}
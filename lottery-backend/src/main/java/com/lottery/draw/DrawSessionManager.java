@@ -0,0 +1,402 @@
+package com.lottery.draw;
+
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lottery.cache.ActivityChangeLog;
+import com.lottery.cache.LotteryDataCache;
+import com.lottery.common.context.TenantContext;
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.po.LotteryActivity;
+import com.lottery.entity.po.OperationLog;
+import com.lottery.entity.po.Participant;
+import com.lottery.entity.po.Prize;
+import com.lottery.entity.po.WinnerRecord;
+import com.lottery.mapper.OperationLogMapper;
+import com.lottery.mapper.ParticipantMapper;
+import com.lottery.mapper.PrizeMapper;
+import com.lottery.mapper.WinnerRecordMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 抽奖会话管理器
+ * 核心功能：为进行中的活动维护内存抽奖会话，并按固定间隔将中奖记录批量回写数据库（write-behind）
+ * 会话为单节点内存状态，缺失时（包括重启后）从数据库重建；活动数据被修改时先回写再失效
+ * 回写在独立事务中提交；已返回给客户端的中奖记录不会被丢弃：回写失败时保留并重试，
+ * 多次失败后逐条在独立事务中回写，只把仍失败（与数据库冲突）的记录转存到操作日志（operation_type=UNSAVED_WINNERS），
+ * 再从数据库重建会话
+ */
+@Slf4j
+@Component
+public class DrawSessionManager {
+    
+    /** 回写多次失败、转存到操作日志的中奖记录的操作类型 */
+    public static final String OPERATION_UNSAVED_WINNERS = "UNSAVED_WINNERS";
+    
+    @Value("${lottery.draw.session.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${lottery.draw.session.flush-interval-ms:200}")
+    private long flushIntervalMs;
+    
+    @Value("${lottery.draw.session.max-flush-attempts:3}")
+    private int maxFlushAttempts;
+    
+    @Autowired
+    private ParticipantMapper participantMapper;
+    
+    @Autowired
+    private PrizeMapper prizeMapper;
+    
+    @Autowired
+    private WinnerRecordMapper winnerRecordMapper;
+    
+    @Autowired
+    private WinnerWriter winnerWriter;
+    
+    @Autowired
+    private LotteryDataCache lotteryDataCache;
+    
+    @Autowired
+    private ActivityChangeLog activityChangeLog;
+    
+    @Autowired
+    private OperationLogMapper operationLogMapper;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final Map<String, DrawSession> sessions = new ConcurrentHashMap<>();
+    
+    private ScheduledExecutorService flusher;
+    
+    /** 回写使用的独立事务，不受调用方事务回滚影响 */
+    private TransactionTemplate newTransaction;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        newTransaction = new TransactionTemplate(transactionManager);
+        newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "draw-session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushAll, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("抽奖会话回写已启动: flushIntervalMs={}", flushIntervalMs);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (flusher == null) {
+            return;
+        }
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll();
+        // 停机前仍未回写的记录转存到操作日志，不随进程丢失
+        for (DrawSession session : sessions.values()) {
+            session.close();
+            List<WinnerRecord> unsaved = session.drainPending();
+            if (unsaved.isEmpty()) {
+                continue;
+            }
+            TenantContext.setTenantId(session.getTenantId());
+            try {
+                saveUnsaved(session, unsaved, new IllegalStateException("应用停止时回写未完成"));
+                log.error("应用停止时中奖记录未回写，已转存到操作日志: activityId={}, 未保存记录={}",
+                        session.getActivityId(), describe(unsaved));
+            } catch (Exception e) {
+                log.error("应用停止时中奖记录未回写且转存失败: activityId={}, 未保存记录={}",
+                        session.getActivityId(), describe(unsaved), e);
+            } finally {
+                TenantContext.clear();
+            }
+        }
+    }
+    
+    /**
+     * 获取活动的抽奖会话，缺失时从数据库重建
+     * 
+     * @param activityId 活动 ID
+     * @param activityLoader 会话缺失时加载并校验活动
+     * @return 抽奖会话；未启用或活动不是进行中状态时返回 null
+     */
+    public DrawSession getOrLoad(String activityId, Supplier<LotteryActivity> activityLoader) {
+        if (!enabled) {
+            return null;
+        }
+        DrawSession session = sessions.get(activityId);
+        if (session != null && session.isClosed()) {
+            // 关闭的会话仍有未回写的记录时不能按数据库状态抽奖，否则会与这些记录冲突；
+            // 持有回写锁检查，等待进行中的回写完成
+            synchronized (session.flushLock) {
+                if (session.hasPending()) {
+                    throw new BizException("中奖记录正在保存，请稍后重试");
+                }
+            }
+            sessions.remove(activityId, session);
+            session = null;
+        }
+        if (session == null) {
+            LotteryActivity activity = activityLoader.get();
+            if (!"ACTIVE".equals(activity.getStatus())) {
+                return null;
+            }
+            // 在 Map 之外查库重建，不在 computeIfAbsent 中持有桶锁做数据库 I/O；并发重建时使用先放入的会话
+            DrawSession loaded = load(activity);
+            DrawSession existing = sessions.putIfAbsent(activityId, loaded);
+            session = existing != null ? existing : loaded;
+        }
+        
+        // 会话命中时不查库，直接在内存中校验租户
+        String tenantId = TenantContext.getTenantId();
+        if (tenantId != null && !tenantId.equals(session.getTenantId())) {
+            throw new BizException("无权访问该活动");
+        }
+        return session;
+    }
+    
+    /**
+     * 失效活动的抽奖会话：先回写待保存记录，再移除会话，下次访问时从数据库重建
+     * 须在调用方修改活动数据之前调用：回写在独立事务中提交，不会与调用方已锁定的行互相等待，
+     * 也不会因活动已被调用方置为完成而失败
+     * 在事务中调用时，事务结束后会再失效一次，丢弃事务提交前按旧数据重建的会话
+     * 
+     * @param activityId 活动 ID
+     * @return 是否回写了中奖记录（调用方此前读取的奖项、人员数据可能已过期）
+     * @throws BizException 回写失败；会话保留未回写的记录并停止接受新的抽奖，由后台继续重试
+     */
+    public boolean invalidate(String activityId) {
+        if (!enabled) {
+            return false;
+        }
+        boolean flushed = evict(activityId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    try {
+                        evict(activityId);
+                    } catch (BizException e) {
+                        log.warn("事务结束后失效抽奖会话失败，由后台继续回写: activityId={}", activityId);
+                    }
+                }
+            });
+        }
+        return flushed;
+    }
+    
+    private boolean evict(String activityId) {
+        DrawSession session = sessions.get(activityId);
+        if (session == null) {
+            return false;
+        }
+        session.close();
+        synchronized (session.flushLock) {
+            boolean flushed = flush(session);
+            if (session.hasPending()) {
+                // 未回写的记录已返回给客户端，不能随会话丢弃
+                throw new BizException("中奖记录保存失败，请稍后重试");
+            }
+            sessions.remove(activityId, session);
+            return flushed;
+        }
+    }
+    
+    /**
+     * 回写所有会话的待保存记录
+     */
+    public void flushAll() {
+        for (DrawSession session : sessions.values()) {
+            try {
+                flush(session);
+            } catch (Exception e) {
+                log.error("抽奖会话回写异常: activityId={}", session.getActivityId(), e);
+            }
+        }
+    }
+    
+    private DrawSession load(LotteryActivity activity) {
+        // 加权模式才需要 extra_info 中的权重字段，配置规则时才需要部门与工号
+        DrawConfig drawConfig = DrawConfig.parse(activity.getConfigJson());
+        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
+        participantWrapper.select(drawConfig.participantColumns(Participant::getIsWinner))
+                          .eq(Participant::getActivityId, activity.getActivityId());
+        List<Participant> participants = participantMapper.selectList(participantWrapper);
+        
+        LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
+        prizeWrapper.eq(Prize::getActivityId, activity.getActivityId());
+        List<Prize> prizes = prizeMapper.selectList(prizeWrapper);
+        
+        List<WinnerRecord> winners = Collections.emptyList();
+        if (drawConfig.hasRules()) {
+            LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
+            winnerWrapper.select(WinnerRecord::getParticipantId, WinnerRecord::getPrizeId)
+                         .eq(WinnerRecord::getActivityId, activity.getActivityId());
+            winners = winnerRecordMapper.selectList(winnerWrapper);
+        }
+        
+        log.info("从数据库重建抽奖会话: activityId={}, participants={}, prizes={}",
+                activity.getActivityId(), participants.size(), prizes.size());
+        return new DrawSession(activity, participants, prizes, winners);
+    }
+
+    
+    /**
+     * 在独立事务中回写会话的待保存记录
+     * 
+     * @return 是否回写了记录；失败时记录放回会话，多次失败后逐条回写，仍失败的转存到操作日志
+     */
+    private boolean flush(DrawSession session) {
+        synchronized (session.flushLock) {
+            List<WinnerRecord> records = session.drainPending();
+            if (records.isEmpty()) {
+                return false;
+            }
+            
+            // 回写线程没有请求上下文，使用会话所属租户切换 Schema
+            String previousTenantId = TenantContext.getTenantId();
+            TenantContext.setTenantId(session.getTenantId());
+            try {
+                write(session, records);
+                session.resetFlushFailures();
+                log.debug("抽奖会话回写成功: activityId={}, count={}", session.getActivityId(), records.size());
+                return true;
+            } catch (Exception e) {
+                session.requeue(records);
+                int failures = session.recordFlushFailure();
+                if (failures < maxFlushAttempts) {
+                    log.warn("抽奖会话回写失败，稍后重试: activityId={}, attempt={}, error={}",
+                            session.getActivityId(), failures, e.getMessage());
+                } else {
+                    // 数据库状态与会话不一致（如多节点同时抽奖）：停止接受新的抽奖，逐条回写，
+                    // 只把仍失败的记录转存到操作日志，然后丢弃会话，从数据库重建
+                    session.close();
+                    List<WinnerRecord> pending = session.drainPending();
+                    List<WinnerRecord> unsaved = writeEach(session, pending);
+                    if (unsaved.isEmpty()) {
+                        sessions.remove(session.getActivityId(), session);
+                        log.warn("抽奖会话批量回写多次失败，逐条回写成功: activityId={}, count={}",
+                                session.getActivityId(), pending.size());
+                        return true;
+                    }
+                    try {
+                        saveUnsaved(session, unsaved, e);
+                        sessions.remove(session.getActivityId(), session);
+                        log.error("抽奖会话回写多次失败，未保存记录已转存到操作日志: activityId={}, 未保存记录={}",
+                                session.getActivityId(), describe(unsaved), e);
+                    } catch (Exception saveError) {
+                        // 转存也失败时保留记录与关闭的会话，下次回写继续重试
+                        session.requeue(unsaved);
+                        log.error("抽奖会话回写与转存均失败，稍后重试: activityId={}, 未保存记录={}",
+                                session.getActivityId(), describe(unsaved), saveError);
+                    }
+                    return unsaved.size() < pending.size();
+                }
+                return false;
+            } finally {
+                if (previousTenantId != null) {
+                    TenantContext.setTenantId(previousTenantId);
+                } else {
+                    TenantContext.clear();
+                }
+            }
+        }
+    }
+    
+    /**
+     * 在独立事务中回写中奖记录；缓存失效与变更日志注册在回写事务上，随回写提交生效
+     */
+    private void write(DrawSession session, List<WinnerRecord> records) {
+        newTransaction.executeWithoutResult(status -> {
+            Map<String, Prize> counters = winnerWriter.write(session.getActivityId(), records);
+            lotteryDataCache.evictDrawResults(session.getActivityId());
+            activityChangeLog.recordDraw(session.getActivityId(), records, counters.values());
+        });
+    }
+    
+    /**
+     * 逐条在独立事务中回写，一条记录冲突（如人员已在其他节点中奖）不影响同批其他记录
+     * 
+     * @return 仍回写失败的记录
+     */
+    private List<WinnerRecord> writeEach(DrawSession session, List<WinnerRecord> records) {
+        List<WinnerRecord> failed = new ArrayList<>();
+        for (WinnerRecord record : records) {
+            try {
+                write(session, Collections.singletonList(record));
+            } catch (Exception e) {
+                failed.add(record);
+                log.warn("中奖记录逐条回写失败: activityId={}, record={}:{}, error={}", session.getActivityId(),
+                        record.getPrizeName(), record.getParticipantName(), e.getMessage());
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * 将回写多次失败的中奖记录写入操作日志，供人工核对补录
+     */
+    private void saveUnsaved(DrawSession session, List<WinnerRecord> records, Exception cause) {
+        List<Map<String, Object>> rows = records.stream().map(record -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("recordId", record.getRecordId());
+            row.put("prizeId", record.getPrizeId());
+            row.put("prizeName", record.getPrizeName());
+            row.put("participantId", record.getParticipantId());
+            row.put("participantName", record.getParticipantName());
+            row.put("drawSequence", record.getDrawSequence());
+            row.put("drawTime", String.valueOf(record.getDrawTime()));
+            row.put("remarks", record.getRemarks());
+            return row;
+        }).collect(Collectors.toList());
+        
+        OperationLog entry = new OperationLog();
+        entry.setActivityId(session.getActivityId());
+        entry.setOperatorId(session.getCreatedBy());
+        entry.setOperatorName("system");
+        entry.setOperationType(OPERATION_UNSAVED_WINNERS);
+        entry.setOperationDesc(StrUtil.maxLength("中奖记录回写失败: " + cause.getMessage(), 490));
+        entry.setTargetType("ACTIVITY");
+        entry.setTargetId(session.getActivityId());
+        entry.setRequestParams(Map.of("records", rows));
+        entry.setCreatedAt(LocalDateTime.now());
+        newTransaction.executeWithoutResult(status -> operationLogMapper.insert(entry));
+    }
+    
+    private static String describe(List<WinnerRecord> records) {
+        return records.stream()
+            .map(r -> r.getPrizeName() + ":" + r.getParticipantName())
+            .collect(Collectors.joining(","));
+    }
+}
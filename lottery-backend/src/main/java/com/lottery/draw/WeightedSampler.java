@@ -0,0 +1,102 @@
+package com.lottery.draw;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * 加权无放回采样器
+ * 每轮基于别名表 O(1) 采样；已抽中或被规则剔除的候选以拒绝采样跳过，
+ * 被剔除的权重超过剩余权重的一半时重建别名表，保证每次采样的期望尝试次数不超过 2
+ */
+final class WeightedSampler {
+    
+    private final int[] items;
+    private final double[] weights;
+    private final BitSet removed;
+    
+    private int[] positions;
+    private AliasTable table;
+    private double liveWeight;
+    private double removedWeight;
+    
+    /**
+     * @param items 候选项（如参与人员下标）
+     * @param weights 与候选项一一对应的权重，非正数的候选项不会被抽中
+     */
+    WeightedSampler(int[] items, double[] weights) {
+        this.items = items;
+        this.weights = weights;
+        this.removed = new BitSet(items.length);
+        rebuild();
+    }
+    
+    /**
+     * 按权重无放回抽取 count 个候选项
+     */
+    int[] sample(int count, Random random) {
+        if (count > DrawEngine.countEligible(weights)) {
+            throw new IllegalArgumentException("可抽取人员不足: count=" + count);
+        }
+        int[] picked = new int[count];
+        for (int k = 0; k < count; k++) {
+            picked[k] = items[pick(random)];
+        }
+        return picked;
+    }
+    
+    /**
+     * 抽取一个候选并将其移出候选池
+     * 
+     * @return 候选在 items 中的位置
+     */
+    int pick(Random random) {
+        if (removedWeight * 2 > liveWeight) {
+            rebuild();
+        }
+        if (positions.length == 0) {
+            throw new IllegalStateException("候选池已空");
+        }
+        while (true) {
+            int position = positions[table.sample(random)];
+            if (!removed.get(position)) {
+                remove(position);
+                return position;
+            }
+        }
+    }
+    
+    /**
+     * 将候选移出候选池（如所属部门已达上限）
+     */
+    void remove(int position) {
+        if (removed.get(position)) {
+            return;
+        }
+        removed.set(position);
+        if (weights[position] > 0) {
+            removedWeight += weights[position];
+        }
+    }
+    
+    private void rebuild() {
+        int size = 0;
+        int[] live = new int[items.length];
+        for (int i = 0; i < items.length; i++) {
+            if (weights[i] > 0 && !removed.get(i)) {
+                live[size++] = i;
+            }
+        }
+        positions = new int[size];
+        System.arraycopy(live, 0, positions, 0, size);
+        
+        double[] w = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            w[i] = weights[positions[i]];
+            sum += w[i];
+        }
+        table = size > 0 ? new AliasTable(w) : null;
+        liveWeight = sum;
+        removedWeight = 0;
+    }
+}
@@ -0,0 +1,99 @@
+package com.lottery.draw;
+
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.po.Participant;
+import com.lottery.entity.po.Prize;
+import com.lottery.entity.po.WinnerRecord;
+import com.lottery.mapper.ActivityMapper;
+import com.lottery.mapper.ParticipantMapper;
+import com.lottery.mapper.PrizeMapper;
+import com.lottery.mapper.WinnerRecordMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 中奖记录写入器
+ * 单条保存、批量保存、服务端抽奖和抽奖会话回写共用的持久化管道：
+ * 多行插入中奖记录，集合更新人员状态，每个奖项和活动的计数各原子更新一次
+ */
+@Component
+public class WinnerWriter {
+    
+    /** 多行插入中奖记录时每条 INSERT 的最大行数 */
+    private static final int INSERT_BATCH_SIZE = 500;
+    
+    @Autowired
+    private ActivityMapper activityMapper;
+    
+    @Autowired
+    private PrizeMapper prizeMapper;
+    
+    @Autowired
+    private ParticipantMapper participantMapper;
+    
+    @Autowired
+    private WinnerRecordMapper winnerRecordMapper;
+    
+    /**
+     * 持久化同一活动的一批中奖记录
+     * 名额、重复中奖和活动状态均由数据库条件更新校验，并发保存无需行锁
+     * 
+     * @param activityId 活动 ID
+     * @param records 中奖记录
+     * @return 奖项 ID -> 更新后的奖项计数（prizeId/totalQuota/drawnCount/status）
+     */
+    @Transactional(rollbackFor = Exception.class)
+    public Map<String, Prize> write(String activityId, List<WinnerRecord> records) {
+        LocalDateTime now = LocalDateTime.now();
+
+        // 1. 每个奖项原子增加已抽取数量（drawn_count + n <= total_quota），抽满时同一语句置为 COMPLETED
+        Map<String, Integer> drawnByPrize = new LinkedHashMap<>();
+        Map<String, String> prizeNames = new LinkedHashMap<>();
+        for (WinnerRecord record : records) {
+            drawnByPrize.merge(record.getPrizeId(), 1, Integer::sum);
+            prizeNames.putIfAbsent(record.getPrizeId(), record.getPrizeName());
+        }
+        Map<String, Prize> counters = new LinkedHashMap<>();
+        for (Map.Entry<String, Integer> entry : drawnByPrize.entrySet()) {
+            Prize prize = prizeMapper.incrementDrawnCount(entry.getKey(), entry.getValue());
+            if (prize == null) {
+                throw new BizException("该奖项名额已满: " + prizeNames.get(entry.getKey()));
+            }
+            counters.put(entry.getKey(), prize);
+        }
+
+        // 2. 集合更新人员状态：只更新仍未中奖的人员，受影响行数不一致说明有并发保存，整批回滚
+        List<String> participantIds = records.stream()
+            .map(WinnerRecord::getParticipantId)
+            .collect(Collectors.toList());
+        LambdaUpdateWrapper<Participant> participantUpdate = new LambdaUpdateWrapper<>();
+        participantUpdate.set(Participant::getIsWinner, true)
+                         .set(Participant::getUpdatedAt, now)
+                         .in(Participant::getParticipantId, participantIds)
+                         .eq(Participant::getIsWinner, false);
+        int updated = participantMapper.update(null, participantUpdate);
+        if (updated != participantIds.size()) {
+            throw new BizException("该人员已中奖，不能重复中奖");
+        }
+
+        // 3. 多行插入中奖记录（分块，避免超出 JDBC 参数个数上限）
+        for (int from = 0; from < records.size(); from += INSERT_BATCH_SIZE) {
+            int to = Math.min(from + INSERT_BATCH_SIZE, records.size());
+            winnerRecordMapper.insertBatch(records.subList(from, to));
+        }
+
+        // 4. 活动中奖总人数原子增加一次
+        if (activityMapper.incrementTotalWinners(activityId, records.size()) == 0) {
+            throw new BizException("该活动已完成，不能再进行抽奖或重置");
+        }
+        return counters;
+    }
+}
@@ -14,6 +14,16 @@ public class LotteryDataVO implements Serializable {
     
     private static final long serialVersionUID = 1L;
     
+    /**
+     * 数据版本（用于增量查询 sinceVersion）
+     */
+    private Long version;
+    
+    /**
+     * 是否为缓存重建期间返回的旧数据（为 true 时 version 为空，客户端应稍后重新获取）
+     */
+    private Boolean stale;
+    
     /**
      * 活动信息
      */
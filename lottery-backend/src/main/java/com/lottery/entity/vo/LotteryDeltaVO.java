@@ -0,0 +1,67 @@
+package com.lottery.entity.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 抽奖数据增量视图对象 VO
+ * fullReload 为 true 时（版本过旧或期间有结构性修改），客户端需重新获取完整抽奖数据
+ */
+@Data
+public class LotteryDeltaVO implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    private String activityId;
+    
+    /**
+     * 客户端当前版本
+     */
+    private Long sinceVersion;
+    
+    /**
+     * 服务端最新版本
+     */
+    private Long version;
+    
+    /**
+     * 是否需要重新获取完整数据
+     */
+    private Boolean fullReload;
+    
+    /**
+     * 新增中奖记录
+     */
+    private List<LotteryDataVO.WinnerInfo> winners;
+    
+    /**
+     * 已变化的奖项计数（每个奖项只保留最新值）
+     */
+    private List<PrizeCounter> prizes;
+    
+    /**
+     * 已变化的参与人员中奖标记
+     */
+    private List<ParticipantFlag> participants;
+    
+    /**
+     * 奖项计数
+     */
+    @Data
+    public static class PrizeCounter implements Serializable {
+        private String prizeId;
+        private Integer drawnCount;
+        private String status;
+    }
+    
+    /**
+     * 参与人员中奖标记
+     */
+    @Data
+    public static class ParticipantFlag implements Serializable {
+        private String participantId;
+        private Boolean isWinner;
+    }
+}
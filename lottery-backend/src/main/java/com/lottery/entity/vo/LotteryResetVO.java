@@ -0,0 +1,34 @@
+package com.lottery.entity.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 抽奖重置/撤销结果视图对象 VO
+ */
+@Data
+public class LotteryResetVO implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 活动 ID
+     */
+    private String activityId;
+    
+    /**
+     * 删除的中奖记录数
+     */
+    private Integer deletedWinners;
+    
+    /**
+     * 重置中奖状态的人员数
+     */
+    private Integer resetParticipants;
+    
+    /**
+     * 重置计数的奖项数
+     */
+    private Integer resetPrizes;
+}
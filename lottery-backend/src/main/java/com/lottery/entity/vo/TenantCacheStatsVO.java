@@ -0,0 +1,59 @@
+package com.lottery.entity.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 租户本地缓存统计视图对象 VO
+ */
+@Data
+public class TenantCacheStatsVO implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 租户 ID（无租户上下文的数据归入 public）
+     */
+    private String tenantId;
+    
+    /**
+     * 缓存预算（字节）
+     */
+    private Long budgetBytes;
+    
+    /**
+     * 当前占用（估算字节）
+     */
+    private Long usedBytes;
+    
+    /**
+     * 当前条目数
+     */
+    private Long entries;
+    
+    /**
+     * 命中次数
+     */
+    private Long hitCount;
+    
+    /**
+     * 未命中次数
+     */
+    private Long missCount;
+    
+    /**
+     * 命中率
+     */
+    private Double hitRate;
+    
+    /**
+     * 淘汰次数（超出预算被淘汰，不含过期与主动失效）
+     */
+    private Long evictionCount;
+    
+    /**
+     * 淘汰的估算字节数
+     */
+    private Long evictionBytes;
+}
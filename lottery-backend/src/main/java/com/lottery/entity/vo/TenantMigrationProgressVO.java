@@ -0,0 +1,76 @@
+package com.lottery.entity.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 租户 Schema 迁移进度视图对象 VO
+ */
+@Data
+public class TenantMigrationProgressVO implements Serializable {
+    
+    private static final long serialVersionUID = 1L;
+    
+    /**
+     * 本节点最近一次迁移的状态：IDLE-未执行, RUNNING-执行中, COMPLETED-全部成功, FAILED-存在失败
+     */
+    private String status;
+    
+    /**
+     * 目标版本（迁移脚本的最大版本号）
+     */
+    private Integer targetVersion;
+    
+    /**
+     * 租户 Schema 总数（含备用 Schema）
+     */
+    private Integer total;
+    
+    /**
+     * 本次迁移成功的 Schema 数
+     */
+    private Integer migrated;
+    
+    /**
+     * 已是目标版本、无需迁移的 Schema 数
+     */
+    private Integer upToDate;
+    
+    /**
+     * 本次迁移失败的 Schema 数
+     */
+    private Integer failed;
+    
+    /**
+     * 尚未处理的 Schema 数
+     */
+    private Integer remaining;
+    
+    /**
+     * 开始时间
+     */
+    private LocalDateTime startedAt;
+    
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishedAt;
+    
+    /**
+     * 迁移未能执行的原因（如其他节点正在迁移）
+     */
+    private String message;
+    
+    /**
+     * 失败的 Schema -> 失败的脚本及错误信息（最多保留 100 条）
+     */
+    private Map<String, String> failures;
+    
+    /**
+     * 版本表中各版本的 Schema 数量
+     */
+    private Map<Integer, Long> versionCounts;
+}
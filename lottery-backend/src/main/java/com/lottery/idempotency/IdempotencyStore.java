@@ -0,0 +1,282 @@
+package com.lottery.idempotency;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lottery.common.context.TenantContext;
+import com.lottery.common.exception.BizException;
+import jakarta.annotation.PostConstruct;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 幂等结果存储
+ * 核心作用：按 Idempotency-Key 记录写接口的执行结果，客户端重试时直接返回已保存的结果，不再访问数据库
+ * 本地为有界 LRU（按租户隔离），可选在 Redis 保存副本供多节点共享
+ * 请求指纹为请求体 JSON 的 SHA-256 摘要；执行中的占位记录不参与 LRU 淘汰，占位数达到上限时拒绝新请求
+ * 开启 Redis 副本时，执行前先在 Redis 中 SETNX 占位，其他节点的相同请求直接返回"正在处理中"
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+    
+    public static final String HEADER = "Idempotency-Key";
+    
+    private static final String KEY_PREFIX = "idempotency:";
+    private static final int MAX_KEY_LENGTH = 128;
+    
+    /** claimCopy 占位成功的标记 */
+    private static final IdempotencyRecord CLAIMED = new IdempotencyRecord();
+    
+    @Value("${lottery.idempotency.max-entries:10000}")
+    private int maxEntries;
+    
+    @Value("${lottery.idempotency.ttl-seconds:600}")
+    private long ttlSeconds;
+    
+    @Value("${lottery.idempotency.redis-copy:false}")
+    private boolean redisCopy;
+    
+    /** Redis 中"处理中"占位的过期时间，节点在执行中宕机时占位最迟在此之后失效 */
+    @Value("${lottery.idempotency.pending-ttl-seconds:60}")
+    private long pendingTtlSeconds;
+    
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    private Map<String, IdempotencyRecord> records;
+    
+    /** 本地执行中的占位记录数，受 records 锁保护 */
+    private int pendingCount;
+    
+    @PostConstruct
+    public void init() {
+        records = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotencyRecord> eldest) {
+                // 只淘汰已完成的记录：淘汰占位会让同一幂等键的重试在执行期间被再次执行
+                if (size() > maxEntries) {
+                    Iterator<IdempotencyRecord> iterator = values().iterator();
+                    while (iterator.hasNext()) {
+                        if (iterator.next().isCompleted()) {
+                            iterator.remove();
+                            break;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+    
+    /**
+     * 幂等执行
+     * 
+     * @param scope 接口标识
+     * @param idempotencyKey 客户端提供的幂等键，为空时直接执行
+     * @param request 请求参数，同一幂等键的请求参数必须一致
+     * @param action 实际执行的操作
+     * @return 操作结果（重复请求返回首次执行的结果）
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String scope, String idempotencyKey, Object request, Supplier<T> action) {
+        if (StrUtil.isBlank(idempotencyKey)) {
+            return action.get();
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new BizException("参数不合法：Idempotency-Key 长度不能超过" + MAX_KEY_LENGTH);
+        }
+        String key = KEY_PREFIX + StrUtil.blankToDefault(TenantContext.getTenantId(), "public")
+                + ":" + scope + ":" + idempotencyKey;
+        String fingerprint = fingerprint(request);
+        long now = System.currentTimeMillis();
+        
+        // 1. 本地查找；未命中时占位，同一幂等键的并发请求不会重复执行
+        IdempotencyRecord existing;
+        synchronized (records) {
+            existing = records.get(key);
+            if (existing != null && existing.getExpireAt() < now) {
+                remove(key);
+                existing = null;
+            }
+            if (existing == null) {
+                if (pendingCount >= maxEntries) {
+                    throw new BizException("处理中的幂等请求过多，请稍后重试");
+                }
+                records.put(key, IdempotencyRecord.pending(fingerprint, now + ttlSeconds * 1000));
+                pendingCount++;
+            }
+        }
+        if (existing != null) {
+            return (T) replay(existing, fingerprint);
+        }
+        
+        boolean copyClaimed = false;
+        try {
+            // 2. 在 Redis 中占位；其他节点已执行或正在执行时使用其记录
+            IdempotencyRecord copy = claimCopy(key, fingerprint);
+            copyClaimed = copy == CLAIMED;
+            if (copy != null && !copyClaimed) {
+                if (copy.isCompleted()) {
+                    complete(key, copy);
+                } else {
+                    remove(key);
+                }
+                return (T) replay(copy, fingerprint);
+            }
+            
+            // 3. 执行并记录结果
+            T result = action.get();
+            IdempotencyRecord record = IdempotencyRecord.completed(fingerprint, result, now + ttlSeconds * 1000);
+            complete(key, record);
+            saveCopy(key, record);
+            return result;
+        } catch (RuntimeException e) {
+            // 执行失败不记录结果，允许客户端使用同一幂等键重试
+            remove(key);
+            if (copyClaimed) {
+                releaseCopy(key);
+            }
+            throw e;
+        }
+    }
+    
+    /**
+     * 请求指纹：请求体 JSON 的 SHA-256 摘要（十六进制）
+     */
+    private String fingerprint(Object request) {
+        try {
+            return DigestUtil.sha256Hex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new BizException("参数不合法：请求体无法序列化");
+        }
+    }
+    
+    /**
+     * 以记录替换本地占位，调用方不持有 records 锁
+     */
+    private void complete(String key, IdempotencyRecord record) {
+        synchronized (records) {
+            IdempotencyRecord current = records.put(key, record);
+            if (current != null && !current.isCompleted()) {
+                pendingCount--;
+            }
+        }
+    }
+    
+    /**
+     * 移除本地占位（已完成的记录保留）
+     */
+    private void remove(String key) {
+        synchronized (records) {
+            IdempotencyRecord current = records.get(key);
+            if (current != null && !current.isCompleted()) {
+                records.remove(key);
+                pendingCount--;
+            } else if (current != null && current.getExpireAt() < System.currentTimeMillis()) {
+                records.remove(key);
+            }
+        }
+    }
+    
+    private Object replay(IdempotencyRecord record, String fingerprint) {
+        if (!record.getFingerprint().equals(fingerprint)) {
+            throw new BizException("参数不合法：Idempotency-Key 已被其他请求使用");
+        }
+        if (!record.isCompleted()) {
+            throw new BizException("相同 Idempotency-Key 的请求正在处理中，请稍后重试");
+        }
+        log.info("幂等请求命中，返回已保存结果");
+        return record.getResult();
+    }
+    
+    /**
+     * 在 Redis 中占位
+     * 
+     * @return CLAIMED-占位成功；其他节点的记录（已完成或处理中）；null-未开启副本或 Redis 不可用
+     */
+    private IdempotencyRecord claimCopy(String key, String fingerprint) {
+        if (!redisCopy || redisTemplate == null) {
+            return null;
+        }
+        try {
+            IdempotencyRecord pending = IdempotencyRecord.pending(fingerprint,
+                    System.currentTimeMillis() + pendingTtlSeconds * 1000);
+            // 占位在读取前过期时重新占位
+            for (int attempt = 0; attempt < 2; attempt++) {
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue()
+                        .setIfAbsent(key, pending, pendingTtlSeconds, TimeUnit.SECONDS))) {
+                    return CLAIMED;
+                }
+                IdempotencyRecord copy = (IdempotencyRecord) redisTemplate.opsForValue().get(key);
+                if (copy != null) {
+                    return copy;
+                }
+            }
+            return null;
+        } catch (Exception e) {
+            log.warn("幂等记录 Redis 占位失败，仅使用本地记录: key={}, error={}", key, e.getMessage());
+            return null;
+        }
+    }
+    
+    private void releaseCopy(String key) {
+        try {
+            redisTemplate.delete(key);
+        } catch (Exception e) {
+            log.warn("释放幂等记录 Redis 占位失败: key={}, error={}", key, e.getMessage());
+        }
+    }
+    
+    private void saveCopy(String key, IdempotencyRecord record) {
+        if (!redisCopy || redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForValue().set(key, record, ttlSeconds, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("保存幂等结果副本失败: key={}, error={}", key, e.getMessage());
+        }
+    }
+    
+    /**
+     * 幂等记录
+     */
+    @Data
+    @NoArgsConstructor
+    public static class IdempotencyRecord {
+        private String fingerprint;
+        private boolean completed;
+        private Object result;
+        private long expireAt;
+        
+        static IdempotencyRecord pending(String fingerprint, long expireAt) {
+            IdempotencyRecord record = new IdempotencyRecord();
+            record.setFingerprint(fingerprint);
+            record.setExpireAt(expireAt);
+            return record;
+        }
+        
+        static IdempotencyRecord completed(String fingerprint, Object result, long expireAt) {
+            IdempotencyRecord record = pending(fingerprint, expireAt);
+            record.setCompleted(true);
+            record.setResult(result);
+            return record;
+        }
+    }
+}
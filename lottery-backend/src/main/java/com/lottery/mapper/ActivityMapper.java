@@ -3,10 +3,23 @@ package com.lottery.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.lottery.entity.po.LotteryActivity;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
 
 /**
  * 抽奖活动 Mapper 接口
  */
 @Mapper
 public interface ActivityMapper extends BaseMapper<LotteryActivity> {
+    
+    /**
+     * 原子增加活动中奖总人数（已完成的活动不更新）
+     * 
+     * @param activityId 活动 ID
+     * @param count 本次新增中奖人数
+     * @return 受影响行数，0 表示活动不存在或已完成
+     */
+    @Update("UPDATE lottery_activities SET total_winners = total_winners + #{count}, updated_at = CURRENT_TIMESTAMP " +
+            "WHERE activity_id = #{activityId} AND status <> 'COMPLETED'")
+    int incrementTotalWinners(@Param("activityId") String activityId, @Param("count") int count);
 }
@@ -3,10 +3,28 @@ package com.lottery.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.lottery.entity.po.Prize;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
 
 /**
  * 奖项 Mapper 接口
  */
 @Mapper
 public interface PrizeMapper extends BaseMapper<Prize> {
+    
+    /**
+     * 原子增加已抽取数量：名额不足时不更新，抽满时在同一语句中将状态置为 COMPLETED
+     * 
+     * @param prizeId 奖项 ID
+     * @param count 本次新增中奖人数
+     * @return 更新后的奖项计数（prizeId/totalQuota/drawnCount/status），名额不足或奖项不存在时返回 null
+     */
+    @Select("UPDATE prizes SET drawn_count = drawn_count + #{count}, " +
+            "status = CASE WHEN drawn_count + #{count} >= total_quota THEN 'COMPLETED' ELSE status END, " +
+            "updated_at = CURRENT_TIMESTAMP " +
+            "WHERE prize_id = #{prizeId} AND drawn_count + #{count} <= total_quota " +
+            "RETURNING prize_id, total_quota, drawn_count, status")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    Prize incrementDrawnCount(@Param("prizeId") String prizeId, @Param("count") int count);
 }
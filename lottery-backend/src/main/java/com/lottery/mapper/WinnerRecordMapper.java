@@ -2,8 +2,52 @@ package com.lottery.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.lottery.entity.po.WinnerRecord;
+import com.lottery.entity.vo.WinnerVO;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 @Mapper
 public interface WinnerRecordMapper extends BaseMapper<WinnerRecord> {
+    
+    /**
+     * 多行插入中奖记录（单条 INSERT ... VALUES (...), (...)）
+     * 
+     * @param records 中奖记录
+     * @return 插入行数
+     */
+    @Insert({
+        "<script>",
+        "INSERT INTO winner_records (record_id, activity_id, prize_id, participant_id, participant_name,",
+        " prize_name, gift_name, draw_time, draw_sequence, operator_id, operator_name, remarks, created_at) VALUES ",
+        "<foreach collection='records' item='r' separator=','>",
+        "(#{r.recordId}, #{r.activityId}, #{r.prizeId}, #{r.participantId}, #{r.participantName},",
+        " #{r.prizeName}, #{r.giftName}, #{r.drawTime}, #{r.drawSequence}, #{r.operatorId}, #{r.operatorName},",
+        " #{r.remarks}, #{r.createdAt})",
+        "</foreach>",
+        "</script>"
+    })
+    int insertBatch(@Param("records") List<WinnerRecord> records);
+    
+    /**
+     * 查询活动中奖列表：关联奖项与参与人员，直接投影为 WinnerVO（不含活动名称）
+     * 只读取中奖记录及其关联的行，开销与中奖人数成正比，与参与人员总数无关
+     * 
+     * @param activityId 活动 ID
+     * @return 按抽奖时间排序的中奖列表
+     */
+    @Select({
+        "SELECT w.record_id, w.activity_id, w.prize_id, w.prize_name, w.participant_id, w.participant_name,",
+        " w.gift_name, w.draw_time, w.draw_sequence, w.operator_name, w.remarks,",
+        " z.total_quota, p.employee_no, p.department",
+        "FROM winner_records w",
+        "LEFT JOIN prizes z ON z.prize_id = w.prize_id",
+        "LEFT JOIN participants p ON p.participant_id = w.participant_id",
+        "WHERE w.activity_id = #{activityId}",
+        "ORDER BY w.draw_time, w.draw_sequence"
+    })
+    List<WinnerVO> selectWinnerViews(@Param("activityId") String activityId);
 }
@@ -7,19 +7,23 @@ import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.plugin.*;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 /**
  * MyBatis Schema 动态切换拦截器
  * 核心功能：根据租户上下文动态切换数据库 Schema
+ * 连接归还时不重置 search_path，每条语句执行前与 SearchPathFilter 记录的当前 Schema 比对，不一致时才 SET；
+ * 无租户上下文时切回连接的初始 Schema（public），避免沿用上一个借用者的租户 Schema
  */
 @Slf4j
 @Component
+@ConditionalOnProperty(name = "lottery.tenant.mode", havingValue = "search-path", matchIfMissing = true)
 @Intercepts({
     @Signature(
         type = Executor.class,
@@ -35,83 +39,50 @@ import java.sql.SQLException;
 public class SchemaInterceptor implements Interceptor {
     
     private static final String PUBLIC_SCHEMA = "public";
-    private static final String SCHEMA_PREFIX = "tenant_";
+    
+    @Autowired
+    private TenantSchemaResolver tenantSchemaResolver;
+    
+    @Autowired
+    private SearchPathFilter searchPathFilter;
     
     @Override
     public Object intercept(Invocation invocation) throws Throwable {
         // 获取当前租户 ID
         String tenantId = TenantContext.getTenantId();
         
-        // 如果没有租户上下文，或租户ID无效，使用 public schema
-        if (tenantId == null || tenantId.isEmpty() || "undefined".equals(tenantId) || "null".equals(tenantId)) {
-            log.debug("租户上下文为空或无效，使用 public schema: tenantId={}", tenantId);
-            return invocation.proceed();
-        }
-        
         // 获取数据库连接
         Executor executor = (Executor) invocation.getTarget();
         Connection connection = executor.getTransaction().getConnection();
         
-        try {
-            // 查询租户的 schema 名称
-            String schemaName = getSchemaName(tenantId, connection);
-            
-            if (schemaName != null) {
-                // 设置 search_path
-                setSearchPath(connection, schemaName);
-                log.debug("切换到租户 Schema: {}", schemaName);
-            }
-            
-            // 执行原始SQL
-            return invocation.proceed();
-            
-        } finally {
-            // 执行完成后重置 search_path (可选)
-            // resetSearchPath(connection);
+        // 如果没有租户上下文，或租户ID无效，使用连接的初始 schema（public）
+        String schemaName;
+        if (!TenantSchemaResolver.hasTenant(tenantId)) {
+            log.debug("租户上下文为空或无效，使用 public schema: tenantId={}", tenantId);
+            schemaName = searchPathFilter.home(connection);
+        } else {
+            // 解析租户的 schema 名称（缓存命中时不查询数据库）
+            schemaName = tenantSchemaResolver.resolve(tenantId, connection);
         }
-    }
-    
-    /**
-     * 获取租户的 Schema 名称
-     */
-    private String getSchemaName(String tenantId, Connection connection) {
-        try {
-            // 使用 JDBC 直接查询租户信息，避免循环依赖
-            String sql = "SELECT schema_name FROM public.tenant_registry WHERE tenant_id = ?::uuid";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, tenantId);
-                try (ResultSet rs = ps.executeQuery()) {
-                    if (rs.next()) {
-                        return rs.getString("schema_name");
-                    }
-                }
-            }
-            
-            // 如果查询不到，使用默认命名规则
-            log.warn("未找到租户 Schema，使用默认命名: tenantId={}", tenantId);
-            return SCHEMA_PREFIX + tenantId.replace("-", "_");
-            
-        } catch (Exception e) {
-            log.error("查询租户 Schema 失败: {}", e.getMessage());
-            return SCHEMA_PREFIX + tenantId.replace("-", "_");
+        
+        // 连接已在该 schema 时不再重复设置（连接归还时保留最后一次的 schema）
+        if (schemaName != null && !schemaName.equals(searchPathFilter.current(connection))) {
+            setSearchPath(connection, schemaName);
+            searchPathFilter.track(connection, schemaName);
+            log.debug("切换到租户 Schema: {}", schemaName);
         }
+        
+        // 执行原始SQL
+        return invocation.proceed();
     }
     
     /**
      * 设置 PostgreSQL search_path
      */
     private void setSearchPath(Connection connection, String schemaName) throws SQLException {
-        String sql = "SET search_path TO " + schemaName + ", public";
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.execute();
-        }
-    }
-    
-    /**
-     * 重置 search_path 到 public
-     */
-    private void resetSearchPath(Connection connection) throws SQLException {
-        String sql = "SET search_path TO public";
+        String sql = PUBLIC_SCHEMA.equals(schemaName)
+                ? "SET search_path TO " + PUBLIC_SCHEMA
+                : "SET search_path TO " + schemaName + ", " + PUBLIC_SCHEMA;
         try (PreparedStatement statement = connection.prepareStatement(sql)) {
             statement.execute();
         }
@@ -0,0 +1,142 @@
+package com.lottery.mybatis;
+
+import com.baomidou.mybatisplus.core.toolkit.ExceptionUtils;
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.lottery.common.context.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.util.TablesNamesFinder;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Schema 限定改写拦截器（lottery.tenant.mode=qualified）
+ * 将 SQL 中未限定 Schema 的租户表（prizes、participants、winner_records 等）改写为 {schema}.{table}，
+ * 不修改会话的 search_path，可配合事务级连接池（如 PgBouncer transaction 模式）使用，
+ * 服务端预编译语句也不会因 search_path 不同而失效
+ * 解析结果按 SQL 文本缓存为带占位 Schema 的模板，同一语句只解析一次，各租户仅做字符串替换；
+ * 已限定 Schema 的表（如 public.tenant_registry）和不在租户表清单中的名称（CTE 等）保持不变
+ */
+@Slf4j
+public class SchemaQualifyInnerInterceptor implements InnerInterceptor {
+    
+    /** 模板中的占位 Schema，改写时替换为租户 Schema */
+    private static final String PLACEHOLDER = "__lottery_tenant_schema__";
+    
+    /** 不含租户表的语句缓存为空串，改写时直接返回原 SQL */
+    private static final String UNCHANGED = "";
+    
+    private final TenantSchemaResolver tenantSchemaResolver;
+    private final Set<String> tenantTables;
+    
+    /** 原始 SQL -> 带占位 Schema 的模板 */
+    private final Cache<String, String> templates;
+    
+    /**
+     * @param tenantSchemaResolver 租户 Schema 解析
+     * @param tenantTables 位于租户 Schema 中的表名
+     * @param maxTemplates 模板缓存条数上限
+     */
+    public SchemaQualifyInnerInterceptor(TenantSchemaResolver tenantSchemaResolver, Set<String> tenantTables,
+                                         long maxTemplates) {
+        this.tenantSchemaResolver = tenantSchemaResolver;
+        this.tenantTables = tenantTables.stream()
+                .map(table -> table.trim().toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+        this.templates = Caffeine.newBuilder()
+                .maximumSize(maxTemplates)
+                .build();
+    }
+    
+    /**
+     * 查询在计算一级缓存键之前改写，不同租户的相同语句不会共用缓存
+     */
+    @Override
+    public void beforeQuery(Executor executor, MappedStatement ms, Object parameter, RowBounds rowBounds,
+                            ResultHandler resultHandler, BoundSql boundSql) throws SQLException {
+        String tenantId = TenantContext.getTenantId();
+        if (!TenantSchemaResolver.hasTenant(tenantId)) {
+            return;
+        }
+        PluginUtils.MPBoundSql mpBoundSql = PluginUtils.mpBoundSql(boundSql);
+        Connection connection = executor.getTransaction().getConnection();
+        mpBoundSql.sql(rewrite(mpBoundSql.sql(), tenantSchemaResolver.resolve(tenantId, connection)));
+    }
+    
+    /**
+     * 增删改在预编译前改写（查询已在 beforeQuery 中处理）
+     */
+    @Override
+    public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+        PluginUtils.MPStatementHandler mpSh = PluginUtils.mpStatementHandler(sh);
+        SqlCommandType commandType = mpSh.mappedStatement().getSqlCommandType();
+        if (commandType != SqlCommandType.INSERT && commandType != SqlCommandType.UPDATE
+                && commandType != SqlCommandType.DELETE) {
+            return;
+        }
+        String tenantId = TenantContext.getTenantId();
+        if (!TenantSchemaResolver.hasTenant(tenantId)) {
+            return;
+        }
+        PluginUtils.MPBoundSql mpBoundSql = mpSh.mPBoundSql();
+        mpBoundSql.sql(rewrite(mpBoundSql.sql(), tenantSchemaResolver.resolve(tenantId, connection)));
+    }
+    
+    /**
+     * 按模板改写 SQL
+     */
+    String rewrite(String sql, String schemaName) {
+        if (schemaName == null) {
+            return sql;
+        }
+        String template = templates.get(sql, this::parse);
+        return template.isEmpty() ? sql : template.replace(PLACEHOLDER, schemaName);
+    }
+    
+    private String parse(String sql) {
+        Statement statement;
+        try {
+            statement = CCJSqlParserUtil.parse(sql);
+        } catch (JSQLParserException e) {
+            // 无法解析时不能退回 search_path，直接失败以免读写到错误的 Schema
+            throw ExceptionUtils.mpe("Failed to qualify tenant tables, Error SQL: %s", e, sql);
+        }
+        
+        boolean[] qualified = {false};
+        new TablesNamesFinder() {
+            @Override
+            public void visit(Table table) {
+                super.visit(table);
+                if (table.getSchemaName() == null
+                        && tenantTables.contains(table.getName().toLowerCase(Locale.ROOT))) {
+                    table.setSchemaName(PLACEHOLDER);
+                    qualified[0] = true;
+                }
+            }
+        }.getTableList(statement);
+        
+        if (!qualified[0]) {
+            return UNCHANGED;
+        }
+        String template = statement.toString();
+        log.debug("生成 Schema 限定模板: {}", template);
+        return template;
+    }
+}
@@ -0,0 +1,194 @@
+package com.lottery.mybatis;
+
+import com.alibaba.druid.filter.FilterAdapter;
+import com.alibaba.druid.filter.FilterChain;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import com.alibaba.druid.proxy.jdbc.ConnectionProxy;
+import com.alibaba.druid.proxy.jdbc.StatementProxy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * search_path 跟踪过滤器（Druid Filter，由 Druid 数据源自动注册）
+ * 在物理连接上记录当前 search_path，SchemaInterceptor 只在 Schema 与目标不一致时执行 SET；
+ * 连接归还连接池时保留最后一次的 Schema、不做重置（每次归还都重置会多出一次往返，且下一个借用者多半又要切回租户 Schema），
+ * 下一个借用者执行语句前由 SchemaInterceptor 比对后按需切换，无租户上下文的请求切回连接的初始 Schema
+ * 租户专属连接池（TenantRoutingDataSource）登记固定 Schema，其连接在建立时即切换到该 Schema，并以此为初始 Schema
+ * 事务回滚会撤销事务内执行的 SET，回滚后状态记为未知，下一条语句重新设置
+ * 非 Druid 连接无法跟踪，按原方式每次设置
+ */
+@Slf4j
+@Component
+public class SearchPathFilter extends FilterAdapter {
+    
+    public static final String DEFAULT_SCHEMA = "public";
+    
+    private static final String ATTRIBUTE = "lottery.searchPath";
+    private static final String HOME_ATTRIBUTE = "lottery.homeSchema";
+    private static final String UNKNOWN = "";
+    private static final String SET_PREFIX = "SET search_path";
+    
+    /** 数据源名称 -> 连接固定的 Schema（租户专属连接池） */
+    private final Map<String, String> homeSchemas = new ConcurrentHashMap<>();
+    
+    /**
+     * 登记数据源的固定 Schema，须在数据源初始化（建立连接）之前调用
+     */
+    public void registerHomeSchema(String dataSourceName, String schemaName) {
+        homeSchemas.put(dataSourceName, schemaName);
+    }
+    
+    public void unregisterHomeSchema(String dataSourceName) {
+        homeSchemas.remove(dataSourceName);
+    }
+    
+    /**
+     * 连接当前的 Schema
+     *
+     * @param connection 事务连接
+     * @return 当前 Schema；新建连接为 public（连接串指定），无法跟踪或状态未知时返回 null
+     */
+    public String current(Connection connection) {
+        ConnectionProxy proxy = proxyOf(connection);
+        if (proxy == null) {
+            return null;
+        }
+        Object schema = proxy.getAttribute(ATTRIBUTE);
+        if (schema == null) {
+            return DEFAULT_SCHEMA;
+        }
+        return UNKNOWN.equals(schema) ? null : (String) schema;
+    }
+    
+    /**
+     * 连接的初始 Schema：租户专属连接池为登记的固定 Schema，其余为 public
+     */
+    public String home(Connection connection) {
+        ConnectionProxy proxy = proxyOf(connection);
+        return proxy != null ? homeOf(proxy) : DEFAULT_SCHEMA;
+    }
+    
+    /**
+     * 记录连接已切换到的 Schema
+     */
+    public void track(Connection connection, String schemaName) {
+        ConnectionProxy proxy = proxyOf(connection);
+        if (proxy != null) {
+            proxy.putAttribute(ATTRIBUTE, schemaName);
+        }
+    }
+    
+    /**
+     * 租户专属连接池的连接建立后立即切换到固定 Schema
+     */
+    @Override
+    public ConnectionProxy connection_connect(FilterChain chain, Properties info) throws SQLException {
+        ConnectionProxy connection = chain.connection_connect(info);
+        String home = homeSchemas.get(chain.getDataSource().getName());
+        if (home == null) {
+            return connection;
+        }
+        try {
+            execute(connection, home);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        connection.putAttribute(HOME_ATTRIBUTE, home);
+        connection.putAttribute(ATTRIBUTE, home);
+        return connection;
+    }
+    
+    /**
+     * 其他代码直接执行的 SET search_path（如创建租户 Schema）无法得知结果，记为未知
+     */
+    @Override
+    public boolean statement_execute(FilterChain chain, StatementProxy statement, String sql) throws SQLException {
+        try {
+            return chain.statement_execute(statement, sql);
+        } finally {
+            if (sql != null && sql.regionMatches(true, 0, SET_PREFIX, 0, SET_PREFIX.length())) {
+                markUnknown(statement.getConnectionProxy());
+            }
+        }
+    }
+    
+    @Override
+    public void connection_rollback(FilterChain chain, ConnectionProxy connection) throws SQLException {
+        try {
+            chain.connection_rollback(connection);
+        } finally {
+            rolledBack(connection);
+        }
+    }
+    
+    @Override
+    public void connection_rollback(FilterChain chain, ConnectionProxy connection, Savepoint savepoint) throws SQLException {
+        try {
+            chain.connection_rollback(connection, savepoint);
+        } finally {
+            rolledBack(connection);
+        }
+    }
+    
+    /**
+     * 连接归还连接池：保留当前 Schema，不执行 SET
+     */
+    @Override
+    public void dataSource_releaseConnection(FilterChain chain, DruidPooledConnection connection) throws SQLException {
+        try {
+            // 未提交的事务在回收时会被回滚，事务内的 SET 也会随之撤销，此时记为未知（autoCommit 为驱动本地状态，不访问数据库）
+            if (connection.getConnection() instanceof ConnectionProxy proxy
+                    && proxy.getAttribute(ATTRIBUTE) != null && !proxy.getAutoCommit()) {
+                markUnknown(proxy);
+            }
+        } catch (SQLException e) {
+            markUnknown((ConnectionProxy) connection.getConnection());
+        } finally {
+            chain.dataSource_recycle(connection);
+        }
+    }
+    
+    /**
+     * 回滚只可能撤销已记录过的 SET，从未设置过的连接保持不变
+     */
+    private static void rolledBack(ConnectionProxy connection) {
+        if (connection.getAttribute(ATTRIBUTE) != null) {
+            markUnknown(connection);
+        }
+    }
+    
+    private static String homeOf(ConnectionProxy connection) {
+        Object home = connection.getAttribute(HOME_ATTRIBUTE);
+        return home != null ? (String) home : DEFAULT_SCHEMA;
+    }
+    
+    private static void execute(Connection connection, String schemaName) throws SQLException {
+        String sql = DEFAULT_SCHEMA.equals(schemaName)
+                ? SET_PREFIX + " TO " + DEFAULT_SCHEMA
+                : SET_PREFIX + " TO " + schemaName + ", " + DEFAULT_SCHEMA;
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+    
+    private static void markUnknown(ConnectionProxy connection) {
+        connection.putAttribute(ATTRIBUTE, UNKNOWN);
+    }
+    
+    private static ConnectionProxy proxyOf(Connection connection) {
+        if (connection instanceof DruidPooledConnection pooled
+                && pooled.getConnection() instanceof ConnectionProxy proxy) {
+            return proxy;
+        }
+        return null;
+    }
+}
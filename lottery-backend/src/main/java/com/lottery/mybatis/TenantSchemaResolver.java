@@ -0,0 +1,225 @@
+package com.lottery.mybatis;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 租户 Schema 解析缓存
+ * 缓存 tenant_id -> schema_name，SchemaInterceptor 每条 SQL 不再额外查询 tenant_registry；
+ * 不存在的租户 ID 短时间负缓存，避免无效 ID 反复回源
+ * 租户新增、修改、停用时失效，并通过 Redis 发布订阅通知其他节点
+ */
+@Slf4j
+@Component
+public class TenantSchemaResolver implements MessageListener {
+    
+    public static final String EVICT_CHANNEL = "lottery:tenant:schema:evict";
+    public static final String SCHEMA_PREFIX = "tenant_";
+    
+    private static final String SELECT_SQL = "SELECT schema_name FROM public.tenant_registry WHERE tenant_id = ?::uuid";
+    private static final String SELECT_ALL_SQL = "SELECT tenant_id, schema_name FROM public.tenant_registry";
+    
+    /** 当前节点标识，用于忽略自己发布的失效消息 */
+    private static final String NODE_ID = UUID.randomUUID().toString();
+    private static final String SEPARATOR = "|";
+    
+    @Value("${lottery.tenant.schema-cache.max-entries:10000}")
+    private long maxEntries;
+    
+    @Value("${lottery.tenant.schema-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+    
+    @Value("${lottery.tenant.schema-cache.negative-ttl-seconds:30}")
+    private long negativeTtlSeconds;
+    
+    @Value("${lottery.tenant.schema-cache.preload:false}")
+    private boolean preload;
+    
+    @Value("${lottery.cache.pubsub.enabled:false}")
+    private boolean pubsubEnabled;
+    
+    @Autowired(required = false)
+    private RedisTemplate<String, Object> redisTemplate;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /** 租户 ID -> Schema 名称 */
+    private Cache<String, String> schemas;
+    
+    /** 不存在的租户 ID */
+    private Cache<String, Boolean> unknown;
+    
+    /** 每次失效递增，查询期间发生失效时不回填 */
+    private final AtomicLong generation = new AtomicLong();
+    
+    @PostConstruct
+    public void init() {
+        schemas = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .build();
+        unknown = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofSeconds(Math.max(negativeTtlSeconds, 1)))
+                .build();
+    }
+    
+    /**
+     * 租户上下文是否有效（前端可能传入 undefined / null 字符串）
+     */
+    public static boolean hasTenant(String tenantId) {
+        return tenantId != null && !tenantId.isEmpty() && !"undefined".equals(tenantId) && !"null".equals(tenantId);
+    }
+    
+    /**
+     * 解析租户的 Schema 名称，未命中时使用当前连接查询
+     *
+     * @param tenantId 租户 ID
+     * @param connection 当前事务的连接（拦截器所在连接，避免额外占用连接池）
+     * @return Schema 名称；租户不存在时按默认规则 tenant_{tenantId} 生成
+     */
+    public String resolve(String tenantId, Connection connection) {
+        String schemaName = schemas.getIfPresent(tenantId);
+        if (schemaName != null) {
+            return schemaName;
+        }
+        if (unknown.getIfPresent(tenantId) != null) {
+            return defaultSchema(tenantId);
+        }
+        
+        long current = generation.get();
+        try {
+            schemaName = query(tenantId, connection);
+        } catch (SQLException e) {
+            // 查询失败不缓存，下次重新查询
+            log.error("查询租户 Schema 失败: {}", e.getMessage());
+            return defaultSchema(tenantId);
+        }
+        
+        if (schemaName != null) {
+            if (generation.get() == current) {
+                schemas.put(tenantId, schemaName);
+            }
+            return schemaName;
+        }
+        
+        log.warn("未找到租户 Schema，使用默认命名: tenantId={}", tenantId);
+        if (negativeTtlSeconds > 0 && generation.get() == current) {
+            unknown.put(tenantId, Boolean.TRUE);
+        }
+        return defaultSchema(tenantId);
+    }
+    
+    /**
+     * 租户新增、修改或停用后失效；在事务中调用时事务结束后再失效一次，
+     * 避免事务期间其他请求读到旧值回填（回滚时同样清除事务内读到的未提交数据）
+     *
+     * @param tenantId 租户 ID
+     */
+    public void invalidate(String tenantId) {
+        invalidateNow(tenantId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidateNow(tenantId);
+                }
+            });
+        }
+    }
+    
+    private void invalidateNow(String tenantId) {
+        evictLocal(tenantId);
+        if (!pubsubEnabled || redisTemplate == null) {
+            return;
+        }
+        try {
+            redisTemplate.convertAndSend(EVICT_CHANNEL, NODE_ID + SEPARATOR + tenantId);
+        } catch (Exception e) {
+            // 通知失败时其他节点最多在 TTL 到期后刷新
+            log.warn("发布租户 Schema 失效消息失败: tenantId={}, error={}", tenantId, e.getMessage());
+        }
+    }
+    
+    /**
+     * 接收其他节点的失效消息：{nodeId}|{tenantId}
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+        if (body == null) {
+            return;
+        }
+        String[] parts = body.toString().split("\\|", 2);
+        if (parts.length < 2 || NODE_ID.equals(parts[0])) {
+            return;
+        }
+        evictLocal(parts[1]);
+        log.debug("收到租户 Schema 失效消息: tenantId={}", parts[1]);
+    }
+    
+    /**
+     * 启动完成后预加载租户 Schema 映射（不超过缓存上限）
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        if (!preload) {
+            return;
+        }
+        try {
+            long current = generation.get();
+            jdbcTemplate.query(SELECT_ALL_SQL, rs -> {
+                if (schemas.estimatedSize() < maxEntries && generation.get() == current) {
+                    schemas.put(rs.getString("tenant_id"), rs.getString("schema_name"));
+                }
+            });
+            log.info("租户 Schema 预加载完成: count={}", schemas.estimatedSize());
+        } catch (Exception e) {
+            log.warn("租户 Schema 预加载失败，改为按需加载: {}", e.getMessage());
+        }
+    }
+    
+    private void evictLocal(String tenantId) {
+        generation.incrementAndGet();
+        schemas.invalidate(tenantId);
+        unknown.invalidate(tenantId);
+    }
+    
+    /**
+     * 使用 JDBC 直接查询租户信息，避免循环依赖
+     */
+    private static String query(String tenantId, Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(SELECT_SQL)) {
+            ps.setString(1, tenantId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getString("schema_name") : null;
+            }
+        }
+    }
+    
+    private static String defaultSchema(String tenantId) {
+        return SCHEMA_PREFIX + tenantId.replace("-", "_");
+    }
+}
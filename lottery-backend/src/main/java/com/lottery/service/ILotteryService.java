@@ -5,6 +5,8 @@ import com.lottery.entity.po.LotteryActivity;
 import com.lottery.entity.po.Participant;
 import com.lottery.entity.po.Prize;
 import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import com.lottery.entity.vo.LotteryResetVO;
 import com.lottery.entity.vo.WinnerVO;
 
 import java.util.List;
@@ -22,6 +24,31 @@ public interface ILotteryService {
      */
     LotteryDataVO getLotteryData(String activityId);
     
+    /**
+     * 获取抽奖数据增量：sinceVersion 之后新增的中奖记录、奖项计数与人员中奖标记
+     * 
+     * @param activityId 活动 ID
+     * @param sinceVersion 客户端当前版本
+     * @return 增量数据（fullReload 为 true 时需重新获取完整数据）
+     */
+    LotteryDeltaVO getLotteryDelta(String activityId, long sinceVersion);
+    
+    /**
+     * 获取活动数据版本（活动、奖项、人员、中奖记录任一变更时递增，用于 ETag）
+     * 读取前按缓存的活动分段校验活动存在且属于当前租户，不满足时抛出异常
+     * 
+     * @param activityId 活动 ID
+     * @return 数据版本，版本未知（变更未能记录）时为 null
+     */
+    Long getDataVersion(String activityId);
+    
+    /**
+     * 获取当前租户活动列表版本（租户下任一活动变更时递增，用于 ETag）
+     * 
+     * @return 活动列表版本，版本未知时为 null
+     */
+    Long getActivitiesVersion();
+    
     /**
      * 保存中奖记录
      * 
@@ -30,6 +57,32 @@ public interface ILotteryService {
      */
     WinnerVO saveWinner(WinnerSaveDTO winnerSaveDTO);
     
+    /**
+     * 批量保存中奖记录（同一活动，单事务）
+     * 
+     * @param winnerSaveDTOs 中奖记录信息列表
+     * @return 中奖记录列表
+     */
+    List<WinnerVO> saveWinners(List<WinnerSaveDTO> winnerSaveDTOs);
+    
+    /**
+     * 服务端抽奖：从未中奖人员中随机抽取指定人数并保存中奖记录
+     * 
+     * @param activityId 活动 ID
+     * @param prizeId 奖项 ID
+     * @param count 抽取人数
+     * @return 本次中奖记录
+     */
+    List<WinnerVO> drawWinners(String activityId, String prizeId, int count);
+    
+    /**
+     * 整场抽奖：按抽奖顺序一次抽完所有奖项的剩余名额，并在同一事务中批量保存
+     * 
+     * @param activityId 活动 ID
+     * @return 本次中奖记录（按奖项抽奖顺序）
+     */
+    List<WinnerVO> drawAll(String activityId);
+    
     /**
      * 查询中奖记录列表
      * 
@@ -42,15 +95,17 @@ public interface ILotteryService {
      * 重置抽奖(清空中奖记录)
      * 
      * @param activityId 活动 ID
+     * @return 重置结果（各步骤受影响行数）
      */
-    void resetLottery(String activityId);
+    LotteryResetVO resetLottery(String activityId);
     
     /**
      * 撤销已结束活动（删除中奖记录，恢复为进行中状态）
      * 
      * @param activityId 活动 ID
+     * @return 撤销结果（各步骤受影响行数）
      */
-    void revokeActivity(String activityId);
+    LotteryResetVO revokeActivity(String activityId);
     
     // ==================== 活动管理 ====================
     
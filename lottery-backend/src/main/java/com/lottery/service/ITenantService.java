@@ -2,6 +2,8 @@ package com.lottery.service;
 
 import com.lottery.entity.dto.RegisterDTO;
 import com.lottery.entity.po.Tenant;
+import com.lottery.entity.vo.TenantCacheStatsVO;
+import com.lottery.entity.vo.TenantMigrationProgressVO;
 import com.lottery.entity.vo.TenantVO;
 
 import java.util.List;
@@ -84,4 +86,25 @@ public interface ITenantService {
      * @return 更新后的租户
      */
     TenantVO updateTenantStatus(String tenantId, String status);
+    
+    /**
+     * 获取各租户本地缓存的预算、占用与命中统计
+     * 
+     * @return 租户缓存统计列表
+     */
+    List<TenantCacheStatsVO> getCacheStats();
+    
+    /**
+     * 异步开始对所有租户 Schema 执行迁移脚本
+     * 
+     * @return 开始时的迁移进度
+     */
+    TenantMigrationProgressVO startSchemaMigration();
+    
+    /**
+     * 获取租户 Schema 迁移进度
+     * 
+     * @return 迁移进度
+     */
+    TenantMigrationProgressVO getSchemaMigrationProgress();
 }
@@ -1,24 +1,38 @@
 package com.lottery.service.impl;
 
 import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
+import com.lottery.cache.ActivityChangeLog;
+import com.lottery.cache.LotteryDataCache;
+import com.lottery.cache.LotteryDataCache.Segment;
+import com.lottery.cache.LotteryDataWarmer;
+import com.lottery.cache.WinnerListCache;
 import com.lottery.common.context.TenantContext;
 import com.lottery.common.exception.BizException;
+import com.lottery.draw.DrawConfig;
+import com.lottery.draw.DrawEngine;
+import com.lottery.draw.DrawRules;
+import com.lottery.draw.DrawSession;
+import com.lottery.draw.DrawSessionManager;
+import com.lottery.draw.WinnerWriter;
 import com.lottery.entity.dto.WinnerSaveDTO;
 import com.lottery.entity.po.*;
 import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import com.lottery.entity.vo.LotteryResetVO;
 import com.lottery.entity.vo.WinnerVO;
 import com.lottery.mapper.*;
 import com.lottery.service.ILotteryService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -40,75 +54,150 @@ public class LotteryServiceImpl implements ILotteryService {
     @Autowired
     private WinnerRecordMapper winnerRecordMapper;
     
-    @Autowired(required = false)
-    private RedisTemplate<String, Object> redisTemplate;
+    @Autowired
+    private WinnerWriter winnerWriter;
+    
+    @Autowired
+    private DrawSessionManager drawSessionManager;
+    
+    @Autowired
+    private LotteryDataCache lotteryDataCache;
+    
+    @Autowired
+    private ActivityChangeLog activityChangeLog;
+    
+    @Autowired
+    private LotteryDataWarmer lotteryDataWarmer;
+    
+    @Autowired
+    private WinnerListCache winnerListCache;
     
     @Override
     public LotteryDataVO getLotteryData(String activityId) {
-        // 尝试从缓存获取
-        String cacheKey = "lottery:" + activityId;
-        if (redisTemplate != null) {
-            LotteryDataVO cached = (LotteryDataVO) redisTemplate.opsForValue().get(cacheKey);
-            if (cached != null) {
-                log.debug("从缓存获取抽奖数据: activityId={}", activityId);
-                return cached;
-            }
+        checkActivityOwner(activityId);
+        // 先取版本再读数据：读取期间提交的修改会在下次增量查询中再次返回，不会遗漏
+        LotteryDataVO result = new LotteryDataVO();
+        Long version = activityChangeLog.currentVersion(activityId);
+        result.setVersion(version);
+        
+        // 按分段读取（本地缓存优先，其次 Redis，均未命中时查库），各分段独立失效；
+        // 本地缓存中加载时版本早于 version 的分段可能尚未收到其他节点的失效消息，重新读取
+        LotteryDataCache.Lookup<LotteryDataVO.ActivityInfo> activity = lotteryDataCache.lookup(activityId,
+                Segment.ACTIVITY, version, () -> loadActivityInfo(activityId));
+        LotteryDataCache.Lookup<List<LotteryDataVO.PrizeInfo>> prizes = lotteryDataCache.lookup(activityId,
+                Segment.PRIZES, version, () -> loadPrizeInfos(activityId));
+        LotteryDataCache.Lookup<Map<String, List<LotteryDataVO.WinnerInfo>>> winnerLookup = lotteryDataCache.lookup(activityId,
+                Segment.WINNERS, version, () -> loadWinnerInfos(activityId));
+        LotteryDataCache.Lookup<List<LotteryDataVO.ParticipantInfo>> participantLookup = lotteryDataCache.lookup(activityId,
+                Segment.PARTICIPANTS, version, () -> loadParticipantInfos(activityId));
+        result.setActivity(activity.getValue());
+        result.setPrizes(prizes.getValue());
+        Map<String, List<LotteryDataVO.WinnerInfo>> winners = winnerLookup.getValue();
+        result.setWinners(winners);
+        
+        // 分段正在重建时返回的是旧数据，不提供版本号，客户端应稍后重新获取
+        if (activity.isStale() || prizes.isStale() || winnerLookup.isStale() || participantLookup.isStale()) {
+            result.setStale(true);
+            result.setVersion(null);
         }
         
-        // 1. 查询活动信息并校验租户
-        LotteryActivity activity = getAndCheckActivity(activityId);
-        
-        // 2. 查询奖项列表
-        LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
-        prizeWrapper.eq(Prize::getActivityId, activityId)
-                   .orderByAsc(Prize::getDrawOrder);
-        List<Prize> prizes = prizeMapper.selectList(prizeWrapper);
-        
-        // 3. 查询参与人员列表
-        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
-        participantWrapper.eq(Participant::getActivityId, activityId);
-        List<Participant> participants = participantMapper.selectList(participantWrapper);
-        
-        // 4. 查询中奖记录
-        LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
-        winnerWrapper.eq(WinnerRecord::getActivityId, activityId)
-                    .orderByAsc(WinnerRecord::getDrawTime);
-        List<WinnerRecord> winners = winnerRecordMapper.selectList(winnerWrapper);
-        
-        // 5. 组装返回数据
-        LotteryDataVO result = new LotteryDataVO();
+        // 参与人员分段不随中奖变化，中奖标记按中奖记录分段推导
+        List<LotteryDataVO.ParticipantInfo> participants = participantLookup.getValue();
+        Set<String> winnerIds = new HashSet<>();
+        winners.values().forEach(list -> list.forEach(w -> winnerIds.add(w.getParticipantId())));
+        result.setParticipants(participants.stream().map(p -> {
+            LotteryDataVO.ParticipantInfo info = new LotteryDataVO.ParticipantInfo();
+            info.setParticipantId(p.getParticipantId());
+            info.setName(p.getName());
+            info.setEmployeeNo(p.getEmployeeNo());
+            info.setDepartment(p.getDepartment());
+            info.setIsWinner(winnerIds.contains(p.getParticipantId()));
+            return info;
+        }).collect(Collectors.toList()));
         
-        // 活动信息
+        return result;
+    }
+    
+    @Override
+    public Long getDataVersion(String activityId) {
+        // 先校验归属：其他租户拿不到 ETag 和 304，不存在的活动 ID 不会读写版本
+        checkActivityOwner(activityId);
+        return activityChangeLog.currentVersion(activityId);
+    }
+    
+    /**
+     * 按缓存的活动分段校验活动存在且属于当前租户；分段命中时不查库（分段缓存按活动所属租户比对），
+     * 未命中或租户不一致时由加载时的 getAndCheckActivity 抛出异常
+     */
+    private void checkActivityOwner(String activityId) {
+        lotteryDataCache.lookup(activityId, Segment.ACTIVITY, () -> loadActivityInfo(activityId));
+    }
+    
+    @Override
+    public Long getActivitiesVersion() {
+        return activityChangeLog.currentTenantVersion();
+    }
+    
+    @Override
+    public LotteryDeltaVO getLotteryDelta(String activityId, long sinceVersion) {
+        getAndCheckActivity(activityId);
+        return activityChangeLog.delta(activityId, sinceVersion);
+    }
+    
+    /**
+     * 加载活动信息分段（校验租户）
+     */
+    private LotteryDataVO.ActivityInfo loadActivityInfo(String activityId) {
+        LotteryActivity activity = getAndCheckActivity(activityId);
         LotteryDataVO.ActivityInfo activityInfo = new LotteryDataVO.ActivityInfo();
         activityInfo.setActivityId(activity.getActivityId());
         activityInfo.setActivityName(activity.getActivityName());
         activityInfo.setStatus(activity.getStatus());
         activityInfo.setTotalParticipants(activity.getTotalParticipants());
         activityInfo.setTotalWinners(activity.getTotalWinners());
-        result.setActivity(activityInfo);
-        
-        // 奖项信息
-        List<LotteryDataVO.PrizeInfo> prizeInfos = prizes.stream().map(prize -> {
+        return activityInfo;
+    }
+    
+    /**
+     * 加载奖项分段
+     */
+    private List<LotteryDataVO.PrizeInfo> loadPrizeInfos(String activityId) {
+        LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
+        prizeWrapper.eq(Prize::getActivityId, activityId)
+                   .orderByAsc(Prize::getDrawOrder);
+        return prizeMapper.selectList(prizeWrapper).stream().map(prize -> {
             LotteryDataVO.PrizeInfo info = new LotteryDataVO.PrizeInfo();
             BeanUtil.copyProperties(prize, info);
             return info;
         }).collect(Collectors.toList());
-        result.setPrizes(prizeInfos);
-        
-        // 参与人员信息
-        List<LotteryDataVO.ParticipantInfo> participantInfos = participants.stream().map(p -> {
+    }
+    
+    /**
+     * 加载参与人员分段（只查询展示所需字段）
+     */
+    private List<LotteryDataVO.ParticipantInfo> loadParticipantInfos(String activityId) {
+        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
+        participantWrapper.select(Participant::getParticipantId, Participant::getName,
+                                  Participant::getEmployeeNo, Participant::getDepartment)
+                          .eq(Participant::getActivityId, activityId);
+        return participantMapper.selectList(participantWrapper).stream().map(p -> {
             LotteryDataVO.ParticipantInfo info = new LotteryDataVO.ParticipantInfo();
             info.setParticipantId(p.getParticipantId());
             info.setName(p.getName());
             info.setEmployeeNo(p.getEmployeeNo());
             info.setDepartment(p.getDepartment());
-            info.setIsWinner(p.getIsWinner());
             return info;
         }).collect(Collectors.toList());
-        result.setParticipants(participantInfos);
-        
-        // 中奖记录按奖项分组
-        Map<String, List<LotteryDataVO.WinnerInfo>> winnersMap = winners.stream()
+    }
+    
+    /**
+     * 加载中奖记录分段（按奖项分组）
+     */
+    private Map<String, List<LotteryDataVO.WinnerInfo>> loadWinnerInfos(String activityId) {
+        LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
+        winnerWrapper.eq(WinnerRecord::getActivityId, activityId)
+                    .orderByAsc(WinnerRecord::getDrawTime);
+        return winnerRecordMapper.selectList(winnerWrapper).stream()
             .map(w -> {
                 LotteryDataVO.WinnerInfo info = new LotteryDataVO.WinnerInfo();
                 info.setRecordId(w.getRecordId());
@@ -120,19 +209,23 @@ public class LotteryServiceImpl implements ILotteryService {
                 return info;
             })
             .collect(Collectors.groupingBy(w -> w.getPrizeName()));
-        result.setWinners(winnersMap);
-        
-        // 缓存数据
-        if (redisTemplate != null) {
-            redisTemplate.opsForValue().set(cacheKey, result, 30, TimeUnit.MINUTES);
-        }
-        
-        return result;
     }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
     public WinnerVO saveWinner(WinnerSaveDTO winnerSaveDTO) {
+        // 进行中活动优先在内存抽奖会话中校验和分配，由会话异步回写数据库
+        DrawSession session = drawSessionManager.getOrLoad(winnerSaveDTO.getActivityId(),
+                () -> getAndCheckActivity(winnerSaveDTO.getActivityId()));
+        if (session != null) {
+            List<WinnerRecord> records = session.assign(Collections.singletonList(winnerSaveDTO), LocalDateTime.now());
+            if (records != null) {
+                log.info("保存中奖记录成功(会话): activityId={}, prizeId={}, participantId={}",
+                        winnerSaveDTO.getActivityId(), winnerSaveDTO.getPrizeId(), winnerSaveDTO.getParticipantId());
+                return toWinnerVO(records.get(0), session.getActivityName(), null);
+            }
+        }
+        
         // 校验活动与租户
         LotteryActivity activity = getAndCheckActivity(winnerSaveDTO.getActivityId());
         ensureActivityNotCompleted(activity);
@@ -158,157 +251,426 @@ public class LotteryServiceImpl implements ILotteryService {
             throw new BizException("该人员已中奖，不能重复中奖");
         }
         
-        if (prize.getDrawnCount() >= prize.getTotalQuota()) {
-            throw new BizException("该奖项名额已满");
-        }
+        // 2. 构建中奖记录，名额和中奖状态由数据库条件更新原子校验
+        LocalDateTime now = LocalDateTime.now();
+        WinnerRecord record = buildWinnerRecord(winnerSaveDTO.getActivityId(), prize, participant,
+                winnerSaveDTO.getDrawTime() != null ? winnerSaveDTO.getDrawTime() : now,
+                winnerSaveDTO.getDrawSequence(), winnerSaveDTO.getRemarks(), now);
         
-        // 2. 插入中奖记录
-        WinnerRecord record = new WinnerRecord();
-        record.setRecordId(UUID.randomUUID().toString());  // 生成中奖记录ID
-        record.setActivityId(winnerSaveDTO.getActivityId());
-        record.setPrizeId(winnerSaveDTO.getPrizeId());
-        record.setParticipantId(winnerSaveDTO.getParticipantId());
-        record.setParticipantName(participant.getName());
-        record.setPrizeName(prize.getPrizeName());
-        record.setGiftName(prize.getGiftName());
-        record.setDrawTime(winnerSaveDTO.getDrawTime() != null ? winnerSaveDTO.getDrawTime() : LocalDateTime.now());
-        record.setDrawSequence(winnerSaveDTO.getDrawSequence());
-        record.setRemarks(winnerSaveDTO.getRemarks());
-        record.setCreatedAt(LocalDateTime.now());
+        // 3. 保存中奖记录，并原子更新人员状态、奖项和活动计数
+        persistWinnerRecords(activity, Collections.singletonMap(prize.getPrizeId(), prize),
+                Collections.singletonList(record));
         
-        winnerRecordMapper.insert(record);
-        
-        // 3. 更新参与人员状态
-        participant.setIsWinner(true);
-        participant.setUpdatedAt(LocalDateTime.now());
-        participantMapper.updateById(participant);
+        // 4. 清除缓存
+        lotteryDataCache.evictDrawResults(winnerSaveDTO.getActivityId());
         
-        // 4. 更新奖项已抽取数量
-        prize.setDrawnCount(prize.getDrawnCount() + 1);
-        prize.setUpdatedAt(LocalDateTime.now());
+        log.info("保存中奖记录成功: activityId={}, prizeId={}, participantId={}", 
+                winnerSaveDTO.getActivityId(), winnerSaveDTO.getPrizeId(), winnerSaveDTO.getParticipantId());
         
-        // 如果抽完了，更新奖项状态
-        if (prize.getDrawnCount().equals(prize.getTotalQuota())) {
-            prize.setStatus("COMPLETED");
+        // 5. 返回中奖记录
+        return toWinnerVO(record, activity.getActivityName(), null);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<WinnerVO> drawWinners(String activityId, String prizeId, int count) {
+        if (count <= 0) {
+            throw new BizException("抽取人数必须大于0");
         }
-        prizeMapper.updateById(prize);
-        
-        // 5. 更新活动中奖总人数（activity 已经查过）
-        activity.setTotalWinners(activity.getTotalWinners() + 1);
-        activity.setUpdatedAt(LocalDateTime.now());
-        activityMapper.updateById(activity);
         
-        // 6. 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + winnerSaveDTO.getActivityId());
+        // 进行中活动直接在内存抽奖会话的未中奖位图上抽取
+        DrawSession session = drawSessionManager.getOrLoad(activityId, () -> getAndCheckActivity(activityId));
+        if (session != null) {
+            List<WinnerRecord> records = session.draw(prizeId, count, LocalDateTime.now());
+            if (records != null) {
+                log.info("服务端抽奖成功(会话): activityId={}, prizeId={}, count={}", activityId, prizeId, count);
+                Integer totalQuota = session.getTotalQuota(prizeId);
+                return records.stream()
+                    .map(record -> toWinnerVO(record, session.getActivityName(), totalQuota))
+                    .collect(Collectors.toList());
+            }
         }
         
-        log.info("保存中奖记录成功: activityId={}, prizeId={}, participantId={}", 
-                winnerSaveDTO.getActivityId(), winnerSaveDTO.getPrizeId(), winnerSaveDTO.getParticipantId());
-        
-        // 7. 返回中奖记录
-        WinnerVO winnerVO = BeanUtil.copyProperties(record, WinnerVO.class);
-        winnerVO.setActivityName(activity.getActivityName());
-        return winnerVO;
+        // 校验活动与租户
+        LotteryActivity activity = getAndCheckActivity(activityId);
+        ensureActivityNotCompleted(activity);
+
+        Prize prize = prizeMapper.selectById(prizeId);
+        if (prize == null) {
+            throw new BizException("奖项不存在");
+        }
+        if (!activityId.equals(prize.getActivityId())) {
+            throw new BizException("参数不合法：奖项不属于当前活动");
+        }
+        if (count > prize.getTotalQuota() - prize.getDrawnCount()) {
+            throw new BizException("抽取人数超过奖项剩余名额");
+        }
+
+        // 1. 构建候选池：只查询未中奖人员的必要字段（加权模式与规则所需字段按配置追加）
+        DrawConfig drawConfig = DrawConfig.parse(activity.getConfigJson());
+        LambdaQueryWrapper<Participant> candidateWrapper = new LambdaQueryWrapper<>();
+        candidateWrapper.select(drawConfig.participantColumns())
+                        .eq(Participant::getActivityId, activityId)
+                        .eq(Participant::getIsWinner, false);
+        List<Participant> candidates = participantMapper.selectList(candidateWrapper);
+
+        // 2. 抽取中奖下标：等概率用部分 Fisher–Yates，加权用别名表，配置规则时只在合格人员中抽取
+        int[] picked;
+        if (drawConfig.hasRules()) {
+            DrawRules rules = DrawRules.compile(drawConfig, candidates);
+            int[] departmentCounts = rules.newDepartmentCounts();
+            rules.countDepartments(departmentCounts, selectWinnerDepartments(prizeId));
+            int[] all = new int[candidates.size()];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            double[] weights = drawConfig.isWeighted() ? drawConfig.weightsOf(candidates) : null;
+            picked = rules.draw(all, weights, departmentCounts, drawConfig.capFor(prize), count);
+        } else if (drawConfig.isWeighted()) {
+            double[] weights = drawConfig.weightsOf(candidates);
+            if (count > DrawEngine.countEligible(weights)) {
+                throw new BizException("未中奖人员不足，无法抽取");
+            }
+            picked = DrawEngine.drawWeighted(weights, count);
+        } else {
+            if (count > candidates.size()) {
+                throw new BizException("未中奖人员不足，无法抽取");
+            }
+            picked = DrawEngine.draw(candidates.size(), count);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<WinnerRecord> records = new ArrayList<>(count);
+        for (int i = 0; i < picked.length; i++) {
+            Participant participant = candidates.get(picked[i]);
+            records.add(buildWinnerRecord(activityId, prize, participant, now,
+                    prize.getDrawnCount() + i + 1, null, now));
+        }
+
+        // 3. 保存中奖记录并更新状态
+        persistWinnerRecords(activity, Collections.singletonMap(prizeId, prize), records);
+
+        // 4. 清除缓存
+        lotteryDataCache.evictDrawResults(activityId);
+
+        log.info("服务端抽奖成功: activityId={}, prizeId={}, count={}", activityId, prizeId, count);
+
+        return records.stream()
+            .map(record -> toWinnerVO(record, activity.getActivityName(), prize.getTotalQuota()))
+            .collect(Collectors.toList());
     }
-    
+
     @Override
-    public List<WinnerVO> getWinners(String activityId) {
+    @Transactional(rollbackFor = Exception.class)
+    public List<WinnerVO> drawAll(String activityId) {
         // 校验活动与租户
         LotteryActivity activity = getAndCheckActivity(activityId);
+        ensureActivityNotCompleted(activity);
 
-        LambdaQueryWrapper<WinnerRecord> wrapper = new LambdaQueryWrapper<>();
-        wrapper.eq(WinnerRecord::getActivityId, activityId)
-               .orderByAsc(WinnerRecord::getDrawTime);
-        List<WinnerRecord> records = winnerRecordMapper.selectList(wrapper);
-        
-        String activityName = activity.getActivityName();
-        
-        // 查询所有奖项，构建奖项ID到奖项信息的映射
+        // 先回写并失效内存抽奖会话，整场抽奖基于数据库状态在同一事务中完成
+        drawSessionManager.invalidate(activityId);
+
+        // 1. 按抽奖顺序加载仍有剩余名额的奖项
         LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
-        prizeWrapper.eq(Prize::getActivityId, activityId);
-        List<Prize> prizes = prizeMapper.selectList(prizeWrapper);
-        Map<String, Prize> prizeMap = prizes.stream()
-            .collect(Collectors.toMap(Prize::getPrizeId, p -> p));
-        
-        // 查询所有参与人员，构建参与人员ID到人员信息的映射
+        prizeWrapper.eq(Prize::getActivityId, activityId)
+                    .orderByAsc(Prize::getDrawOrder);
+        List<Prize> prizes = prizeMapper.selectList(prizeWrapper).stream()
+            .filter(prize -> prize.getTotalQuota() > prize.getDrawnCount())
+            .collect(Collectors.toList());
+        int total = prizes.stream().mapToInt(prize -> prize.getTotalQuota() - prize.getDrawnCount()).sum();
+        if (total == 0) {
+            throw new BizException("所有奖项名额已抽完");
+        }
+
+        // 2. 构建候选池（一次查询）
+        DrawConfig drawConfig = DrawConfig.parse(activity.getConfigJson());
+        LambdaQueryWrapper<Participant> candidateWrapper = new LambdaQueryWrapper<>();
+        candidateWrapper.select(drawConfig.participantColumns())
+                        .eq(Participant::getActivityId, activityId)
+                        .eq(Participant::getIsWinner, false);
+        List<Participant> candidates = participantMapper.selectList(candidateWrapper);
+        double[] weights = drawConfig.isWeighted() ? drawConfig.weightsOf(candidates) : null;
+
+        // 3. 一次抽出全部中奖下标，按奖项顺序依次切分
+        int[] picked;
+        if (drawConfig.hasRules()) {
+            picked = drawAllWithRules(activityId, drawConfig, candidates, weights, prizes, total);
+        } else if (weights != null) {
+            if (total > DrawEngine.countEligible(weights)) {
+                throw new BizException("未中奖人员不足，无法抽取全部奖项");
+            }
+            picked = DrawEngine.drawWeighted(weights, total);
+        } else {
+            if (total > candidates.size()) {
+                throw new BizException("未中奖人员不足，无法抽取全部奖项");
+            }
+            picked = DrawEngine.draw(candidates.size(), total);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<WinnerRecord> records = new ArrayList<>(total);
+        Map<String, Prize> prizeMap = new LinkedHashMap<>();
+        int offset = 0;
+        for (Prize prize : prizes) {
+            int remaining = prize.getTotalQuota() - prize.getDrawnCount();
+            for (int i = 0; i < remaining; i++) {
+                Participant participant = candidates.get(picked[offset++]);
+                records.add(buildWinnerRecord(activityId, prize, participant, now,
+                        prize.getDrawnCount() + i + 1, null, now));
+            }
+            prizeMap.put(prize.getPrizeId(), prize);
+        }
+
+        // 4. 批量保存中奖记录并更新状态
+        persistWinnerRecords(activity, prizeMap, records);
+
+        // 5. 清除缓存
+        lotteryDataCache.evictDrawResults(activityId);
+
+        log.info("整场抽奖成功: activityId={}, prizes={}, count={}", activityId, prizes.size(), total);
+
+        return records.stream()
+            .map(record -> toWinnerVO(record, activity.getActivityName(), prizeMap.get(record.getPrizeId()).getTotalQuota()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 配置规则时的整场抽取：各奖项部门上限不同，按奖项顺序在剩余合格人员中依次抽取
+     */
+    private int[] drawAllWithRules(String activityId, DrawConfig drawConfig, List<Participant> candidates,
+                                   double[] weights, List<Prize> prizes, int total) {
+        DrawRules rules = DrawRules.compile(drawConfig, candidates);
+        Map<String, List<String>> winnerDepartments = selectWinnerDepartmentsByPrize(activityId);
+        BitSet taken = new BitSet(candidates.size());
+        int[] picked = new int[total];
+        int offset = 0;
+        for (Prize prize : prizes) {
+            int remaining = prize.getTotalQuota() - prize.getDrawnCount();
+            int[] pool = new int[candidates.size() - offset];
+            int k = 0;
+            for (int i = taken.nextClearBit(0); i < candidates.size(); i = taken.nextClearBit(i + 1)) {
+                pool[k++] = i;
+            }
+            int[] departmentCounts = rules.newDepartmentCounts();
+            rules.countDepartments(departmentCounts,
+                    winnerDepartments.getOrDefault(prize.getPrizeId(), Collections.emptyList()));
+            int[] prizePicked = rules.draw(pool, weights, departmentCounts, drawConfig.capFor(prize), remaining);
+            for (int index : prizePicked) {
+                taken.set(index);
+                picked[offset++] = index;
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * 查询活动已中奖人员的部门，按奖项分组（用于部门上限计数）
+     */
+    private Map<String, List<String>> selectWinnerDepartmentsByPrize(String activityId) {
+        LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
+        winnerWrapper.select(WinnerRecord::getParticipantId, WinnerRecord::getPrizeId)
+                     .eq(WinnerRecord::getActivityId, activityId);
+        List<WinnerRecord> winners = winnerRecordMapper.selectList(winnerWrapper);
+        if (winners.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
+        participantWrapper.select(Participant::getParticipantId, Participant::getDepartment)
+                          .in(Participant::getParticipantId,
+                              winners.stream().map(WinnerRecord::getParticipantId).collect(Collectors.toList()));
+        Map<String, String> departments = new HashMap<>();
+        for (Participant participant : participantMapper.selectList(participantWrapper)) {
+            departments.put(participant.getParticipantId(), participant.getDepartment());
+        }
+        Map<String, List<String>> result = new HashMap<>();
+        for (WinnerRecord winner : winners) {
+            result.computeIfAbsent(winner.getPrizeId(), id -> new ArrayList<>())
+                  .add(departments.get(winner.getParticipantId()));
+        }
+        return result;
+    }
+
+    /**
+     * 查询奖项已中奖人员的部门（用于部门上限计数）
+     */
+    private List<String> selectWinnerDepartments(String prizeId) {
+        LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
+        winnerWrapper.select(WinnerRecord::getParticipantId)
+                     .eq(WinnerRecord::getPrizeId, prizeId);
+        List<String> participantIds = winnerRecordMapper.selectList(winnerWrapper).stream()
+            .map(WinnerRecord::getParticipantId)
+            .collect(Collectors.toList());
+        if (participantIds.isEmpty()) {
+            return Collections.emptyList();
+        }
         LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
-        participantWrapper.eq(Participant::getActivityId, activityId);
-        List<Participant> participants = participantMapper.selectList(participantWrapper);
-        Map<String, Participant> participantMap = participants.stream()
+        participantWrapper.select(Participant::getDepartment)
+                          .in(Participant::getParticipantId, participantIds);
+        // 部门为空的行 MyBatis 会映射为 null 元素
+        return participantMapper.selectList(participantWrapper).stream()
+            .filter(Objects::nonNull)
+            .map(Participant::getDepartment)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Exception.class)
+    public List<WinnerVO> saveWinners(List<WinnerSaveDTO> winnerSaveDTOs) {
+        if (winnerSaveDTOs == null || winnerSaveDTOs.isEmpty()) {
+            throw new BizException("中奖记录不能为空");
+        }
+
+        String activityId = winnerSaveDTOs.get(0).getActivityId();
+        Set<String> participantIds = new LinkedHashSet<>();
+        Set<String> prizeIds = new HashSet<>();
+        for (WinnerSaveDTO dto : winnerSaveDTOs) {
+            if (StrUtil.hasBlank(dto.getActivityId(), dto.getPrizeId(), dto.getParticipantId())
+                    || dto.getDrawSequence() == null) {
+                throw new BizException("参数不合法：活动ID、奖项ID、参与人员ID和抽奖序号不能为空");
+            }
+            if (!activityId.equals(dto.getActivityId())) {
+                throw new BizException("参数不合法：批量保存的中奖记录必须属于同一活动");
+            }
+            if (!participantIds.add(dto.getParticipantId())) {
+                throw new BizException("参数不合法：同一人员不能重复中奖");
+            }
+            prizeIds.add(dto.getPrizeId());
+        }
+
+        // 进行中活动优先在内存抽奖会话中校验和分配
+        DrawSession session = drawSessionManager.getOrLoad(activityId, () -> getAndCheckActivity(activityId));
+        if (session != null) {
+            List<WinnerRecord> records = session.assign(winnerSaveDTOs, LocalDateTime.now());
+            if (records != null) {
+                log.info("批量保存中奖记录成功(会话): activityId={}, count={}", activityId, records.size());
+                return records.stream()
+                    .map(record -> toWinnerVO(record, session.getActivityName(), session.getTotalQuota(record.getPrizeId())))
+                    .collect(Collectors.toList());
+            }
+        }
+
+        // 校验活动与租户
+        LotteryActivity activity = getAndCheckActivity(activityId);
+        ensureActivityNotCompleted(activity);
+
+        // 1. 集合查询参与人员和奖项（WHERE id IN (...)）
+        Map<String, Participant> participantMap = participantMapper.selectBatchIds(participantIds).stream()
             .collect(Collectors.toMap(Participant::getParticipantId, p -> p));
-        
-        return records.stream().map(record -> {
-            WinnerVO vo = BeanUtil.copyProperties(record, WinnerVO.class);
-            vo.setActivityName(activityName);
-            
-            // 填充奖项信息
-            Prize prize = prizeMap.get(record.getPrizeId());
-            if (prize != null) {
-                vo.setTotalQuota(prize.getTotalQuota());
+        Map<String, Prize> prizeMap = prizeMapper.selectBatchIds(prizeIds).stream()
+            .collect(Collectors.toMap(Prize::getPrizeId, p -> p));
+
+        // 2. 校验并构建中奖记录
+        LocalDateTime now = LocalDateTime.now();
+        List<WinnerRecord> records = new ArrayList<>(winnerSaveDTOs.size());
+        for (WinnerSaveDTO dto : winnerSaveDTOs) {
+            Participant participant = participantMap.get(dto.getParticipantId());
+            if (participant == null) {
+                throw new BizException("参与人员不存在");
             }
-            
-            // 填充参与人员信息
-            Participant participant = participantMap.get(record.getParticipantId());
-            if (participant != null) {
-                vo.setEmployeeNo(participant.getEmployeeNo());
-                vo.setDepartment(participant.getDepartment());
+            Prize prize = prizeMap.get(dto.getPrizeId());
+            if (prize == null) {
+                throw new BizException("奖项不存在");
             }
-            
-            return vo;
-        }).collect(Collectors.toList());
+            // 防止跨活动数据串用
+            if (!activityId.equals(prize.getActivityId()) || !activityId.equals(participant.getActivityId())) {
+                throw new BizException("参数不合法：奖项或参与人员不属于当前活动");
+            }
+            if (Boolean.TRUE.equals(participant.getIsWinner())) {
+                throw new BizException("该人员已中奖，不能重复中奖: " + participant.getName());
+            }
+            records.add(buildWinnerRecord(activityId, prize, participant,
+                    dto.getDrawTime() != null ? dto.getDrawTime() : now,
+                    dto.getDrawSequence(), dto.getRemarks(), now));
+        }
+
+        // 3. 保存中奖记录并更新状态
+        persistWinnerRecords(activity, prizeMap, records);
+
+        // 4. 清除缓存（整批只清一次）
+        lotteryDataCache.evictDrawResults(activityId);
+
+        log.info("批量保存中奖记录成功: activityId={}, count={}", activityId, records.size());
+
+        return records.stream()
+            .map(record -> toWinnerVO(record, activity.getActivityName(), prizeMap.get(record.getPrizeId()).getTotalQuota()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * 批量持久化中奖记录，并将奖项和活动对象的计数刷新为数据库中的最新值
+     */
+    private void persistWinnerRecords(LotteryActivity activity, Map<String, Prize> prizeMap, List<WinnerRecord> records) {
+        Map<String, Prize> counters = winnerWriter.write(activity.getActivityId(), records);
+        counters.forEach((prizeId, counter) -> {
+            Prize prize = prizeMap.get(prizeId);
+            prize.setTotalQuota(counter.getTotalQuota());
+            prize.setDrawnCount(counter.getDrawnCount());
+            prize.setStatus(counter.getStatus());
+        });
+        activity.setTotalWinners(activity.getTotalWinners() + records.size());
+        activityChangeLog.recordDraw(activity.getActivityId(), records, counters.values());
+    }
+
+    private WinnerRecord buildWinnerRecord(String activityId, Prize prize, Participant participant,
+                                           LocalDateTime drawTime, Integer drawSequence, String remarks,
+                                           LocalDateTime now) {
+        WinnerRecord record = new WinnerRecord();
+        record.setRecordId(UUID.randomUUID().toString());
+        record.setActivityId(activityId);
+        record.setPrizeId(prize.getPrizeId());
+        record.setParticipantId(participant.getParticipantId());
+        record.setParticipantName(participant.getName());
+        record.setPrizeName(prize.getPrizeName());
+        record.setGiftName(prize.getGiftName());
+        record.setDrawTime(drawTime);
+        record.setDrawSequence(drawSequence);
+        record.setRemarks(remarks);
+        record.setCreatedAt(now);
+        return record;
+    }
+
+    private WinnerVO toWinnerVO(WinnerRecord record, String activityName, Integer totalQuota) {
+        WinnerVO vo = BeanUtil.copyProperties(record, WinnerVO.class);
+        vo.setActivityName(activityName);
+        vo.setTotalQuota(totalQuota);
+        return vo;
+    }
+
+    @Override
+    public List<WinnerVO> getWinners(String activityId) {
+        // 校验活动与租户
+        LotteryActivity activity = getAndCheckActivity(activityId);
+        String activityName = activity.getActivityName();
+        
+        // 先取版本再查询：查询期间提交的修改会递增版本，下次请求按新版本重新加载
+        Long version = activityChangeLog.currentVersion(activityId);
+        Supplier<List<WinnerVO>> loader = () -> {
+            // 单条关联查询直接投影，只涉及中奖记录及其关联的奖项、人员
+            List<WinnerVO> winners = winnerRecordMapper.selectWinnerViews(activityId);
+            winners.forEach(vo -> vo.setActivityName(activityName));
+            return winners;
+        };
+        // 版本未知时缓存中可能是旧数据，直接查询
+        return version != null ? winnerListCache.get(activityId, version, loader) : loader.get();
     }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void resetLottery(String activityId) {
+    public LotteryResetVO resetLottery(String activityId) {
         log.info("开始重置抽奖: activityId={}", activityId);
 
         LotteryActivity activity = getAndCheckActivity(activityId);
         ensureActivityNotCompleted(activity);
         
-        // 1. 删除中奖记录
-        LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
-        winnerWrapper.eq(WinnerRecord::getActivityId, activityId);
-        winnerRecordMapper.delete(winnerWrapper);
-        
-        // 2. 重置参与人员中奖状态
-        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
-        participantWrapper.eq(Participant::getActivityId, activityId);
-        List<Participant> participants = participantMapper.selectList(participantWrapper);
-        for (Participant p : participants) {
-            p.setIsWinner(false);
-            p.setUpdatedAt(LocalDateTime.now());
-            participantMapper.updateById(p);
-        }
+        LotteryResetVO result = resetDrawState(activityId, null);
         
-        // 3. 重置奖项已抽取数量
-        LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
-        prizeWrapper.eq(Prize::getActivityId, activityId);
-        List<Prize> prizes = prizeMapper.selectList(prizeWrapper);
-        for (Prize prize : prizes) {
-            prize.setDrawnCount(0);
-            prize.setStatus("PENDING");
-            prize.setUpdatedAt(LocalDateTime.now());
-            prizeMapper.updateById(prize);
-        }
-        
-        // 4. 重置活动中奖总人数
-        activity.setTotalWinners(0);
-        activity.setUpdatedAt(LocalDateTime.now());
-        activityMapper.updateById(activity);
-        
-        // 5. 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + activityId);
-        }
-        
-        log.info("抽奖重置成功: activityId={}", activityId);
+        log.info("抽奖重置成功: activityId={}, 删除中奖记录 {} 条, 重置人员 {} 人, 重置奖项 {} 个",
+                activityId, result.getDeletedWinners(), result.getResetParticipants(), result.getResetPrizes());
+        return result;
     }
     
     @Override
     @Transactional(rollbackFor = Exception.class)
-    public void revokeActivity(String activityId) {
+    public LotteryResetVO revokeActivity(String activityId) {
         log.info("开始撤销已结束活动: activityId={}", activityId);
 
         LotteryActivity activity = getAndCheckActivity(activityId);
@@ -318,44 +680,68 @@ public class LotteryServiceImpl implements ILotteryService {
             throw new BizException("只有已结束的活动才能撤销");
         }
         
+        // 重置抽奖状态，并将活动状态恢复为 ACTIVE
+        LotteryResetVO result = resetDrawState(activityId, "ACTIVE");
+        
+        log.info("撤销活动成功: activityId={}, 删除中奖记录 {} 条, 重置人员 {} 人, 重置奖项 {} 个",
+                activityId, result.getDeletedWinners(), result.getResetParticipants(), result.getResetPrizes());
+        return result;
+    }
+    
+    /**
+     * 重置活动的抽奖状态（重置与撤销共用）
+     * 只执行固定几条集合语句，耗时与参会人数无关
+     * 
+     * @param activityId 活动 ID
+     * @param activityStatus 重置后的活动状态，为 null 时保持不变
+     * @return 各步骤受影响行数
+     */
+    private LotteryResetVO resetDrawState(String activityId, String activityStatus) {
+        // 先回写并失效内存抽奖会话，避免重置后再写回旧的中奖记录
+        drawSessionManager.invalidate(activityId);
+        
+        LocalDateTime now = LocalDateTime.now();
+        
         // 1. 删除中奖记录
         LambdaQueryWrapper<WinnerRecord> winnerWrapper = new LambdaQueryWrapper<>();
         winnerWrapper.eq(WinnerRecord::getActivityId, activityId);
         int deletedWinners = winnerRecordMapper.delete(winnerWrapper);
         
-        // 2. 重置参与人员中奖状态
-        LambdaQueryWrapper<Participant> participantWrapper = new LambdaQueryWrapper<>();
-        participantWrapper.eq(Participant::getActivityId, activityId);
-        List<Participant> participants = participantMapper.selectList(participantWrapper);
-        for (Participant p : participants) {
-            p.setIsWinner(false);
-            p.setUpdatedAt(LocalDateTime.now());
-            participantMapper.updateById(p);
-        }
+        // 2. 重置参与人员中奖状态（只更新已中奖的人员）
+        LambdaUpdateWrapper<Participant> participantUpdate = new LambdaUpdateWrapper<>();
+        participantUpdate.set(Participant::getIsWinner, false)
+                         .set(Participant::getUpdatedAt, now)
+                         .eq(Participant::getActivityId, activityId)
+                         .eq(Participant::getIsWinner, true);
+        int resetParticipants = participantMapper.update(null, participantUpdate);
+        
+        // 3. 重置奖项已抽取数量和状态（只更新已变化的奖项）
+        LambdaUpdateWrapper<Prize> prizeUpdate = new LambdaUpdateWrapper<>();
+        prizeUpdate.set(Prize::getDrawnCount, 0)
+                   .set(Prize::getStatus, "PENDING")
+                   .set(Prize::getUpdatedAt, now)
+                   .eq(Prize::getActivityId, activityId)
+                   .and(w -> w.ne(Prize::getDrawnCount, 0).or().ne(Prize::getStatus, "PENDING"));
+        int resetPrizes = prizeMapper.update(null, prizeUpdate);
         
-        // 3. 重置奖项已抽取数量
-        LambdaQueryWrapper<Prize> prizeWrapper = new LambdaQueryWrapper<>();
-        prizeWrapper.eq(Prize::getActivityId, activityId);
-        List<Prize> prizes = prizeMapper.selectList(prizeWrapper);
-        for (Prize prize : prizes) {
-            prize.setDrawnCount(0);
-            prize.setStatus("PENDING");
-            prize.setUpdatedAt(LocalDateTime.now());
-            prizeMapper.updateById(prize);
-        }
-        
-        // 4. 将活动状态恢复为 ACTIVE
-        activity.setStatus("ACTIVE");
-        activity.setTotalWinners(0);
-        activity.setUpdatedAt(LocalDateTime.now());
-        activityMapper.updateById(activity);
-        
-        // 5. 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + activityId);
-        }
-        
-        log.info("撤销活动成功: activityId={}, 已删除 {} 条中奖记录", activityId, deletedWinners);
+        // 4. 重置活动中奖总人数
+        LambdaUpdateWrapper<LotteryActivity> activityUpdate = new LambdaUpdateWrapper<>();
+        activityUpdate.set(LotteryActivity::getTotalWinners, 0)
+                      .set(activityStatus != null, LotteryActivity::getStatus, activityStatus)
+                      .set(LotteryActivity::getUpdatedAt, now)
+                      .eq(LotteryActivity::getActivityId, activityId);
+        activityMapper.update(null, activityUpdate);
+        
+        // 5. 清除缓存，持有旧版本的客户端需全量刷新
+        lotteryDataCache.evictDrawResults(activityId);
+        activityChangeLog.recordReload(activityId);
+        
+        LotteryResetVO result = new LotteryResetVO();
+        result.setActivityId(activityId);
+        result.setDeletedWinners(deletedWinners);
+        result.setResetParticipants(resetParticipants);
+        result.setResetPrizes(resetPrizes);
+        return result;
     }
     
     // ==================== 活动管理 ====================
@@ -421,6 +807,7 @@ public class LotteryServiceImpl implements ILotteryService {
         activity.setCreatedBy(userId);  // 设置创建人
         
         activityMapper.insert(activity);
+        activityChangeLog.recordReload(activity.getActivityId());
         log.info("创建活动成功: activityId={}, activityName={}, tenantId={}, createdBy={}", 
                 activity.getActivityId(), activity.getActivityName(), tenantId, userId);
         return activity;
@@ -440,12 +827,20 @@ public class LotteryServiceImpl implements ILotteryService {
             throw new BizException("无权修改该活动");
         }
         
+        // 先回写并失效抽奖会话（须在修改活动状态之前，回写会校验活动未完成）
+        drawSessionManager.invalidate(activity.getActivityId());
+        
         activity.setUpdatedAt(LocalDateTime.now());
         activityMapper.updateById(activity);
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + activity.getActivityId());
+        lotteryDataCache.evict(activity.getActivityId(), Segment.ACTIVITY);
+        activityChangeLog.recordReload(activity.getActivityId());
+        
+        // 活动切换为进行中时预热缓存，主持人打开抽奖页时无需冷加载
+        if ("ACTIVE".equals(activity.getStatus())
+                && !"ACTIVE".equals(existing.getStatus())) {
+            lotteryDataWarmer.warmOnActivation(activity.getActivityId());
         }
         
         log.info("更新活动成功: activityId={}", activity.getActivityId());
@@ -466,6 +861,9 @@ public class LotteryServiceImpl implements ILotteryService {
     @Override
     @Transactional(rollbackFor = Exception.class)
     public Prize createPrize(Prize prize) {
+        // 先回写并失效抽奖会话
+        drawSessionManager.invalidate(prize.getActivityId());
+        
         // 生成奖项ID
         prize.setPrizeId(UUID.randomUUID().toString());
         prize.setDrawnCount(0);
@@ -481,9 +879,8 @@ public class LotteryServiceImpl implements ILotteryService {
         prizeMapper.insert(prize);
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + prize.getActivityId());
-        }
+        lotteryDataCache.evict(prize.getActivityId(), Segment.PRIZES);
+        activityChangeLog.recordReload(prize.getActivityId());
         
         log.info("创建奖项成功: prizeId={}, prizeName={}", 
                 prize.getPrizeId(), prize.getPrizeName());
@@ -498,6 +895,9 @@ public class LotteryServiceImpl implements ILotteryService {
             throw new BizException("奖项不存在");
         }
         
+        // 先回写并失效抽奖会话
+        drawSessionManager.invalidate(existing.getActivityId());
+        
         // 更新 drawOrder
         if (prize.getPrizeLevel() != null) {
             prize.setDrawOrder(prize.getPrizeLevel());
@@ -507,9 +907,8 @@ public class LotteryServiceImpl implements ILotteryService {
         prizeMapper.updateById(prize);
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + existing.getActivityId());
-        }
+        lotteryDataCache.evict(existing.getActivityId(), Segment.PRIZES);
+        activityChangeLog.recordReload(existing.getActivityId());
         
         log.info("更新奖项成功: prizeId={}", prize.getPrizeId());
         return prize;
@@ -519,6 +918,10 @@ public class LotteryServiceImpl implements ILotteryService {
     @Transactional(rollbackFor = Exception.class)
     public void deletePrize(String prizeId) {
         Prize prize = prizeMapper.selectById(prizeId);
+        // 先回写并失效抽奖会话；回写了中奖记录时按最新数据校验
+        if (prize != null && drawSessionManager.invalidate(prize.getActivityId())) {
+            prize = prizeMapper.selectById(prizeId);
+        }
         if (prize == null) {
             throw new BizException("奖项不存在");
         }
@@ -531,9 +934,8 @@ public class LotteryServiceImpl implements ILotteryService {
         prizeMapper.deleteById(prizeId);
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + prize.getActivityId());
-        }
+        lotteryDataCache.evict(prize.getActivityId(), Segment.PRIZES);
+        activityChangeLog.recordReload(prize.getActivityId());
         
         log.info("删除奖项成功: prizeId={}", prizeId);
     }
@@ -555,6 +957,9 @@ public class LotteryServiceImpl implements ILotteryService {
         // 校验活动与租户
         LotteryActivity activity = getAndCheckActivity(participant.getActivityId());
         ensureActivityNotCompleted(activity);
+        
+        // 先回写并失效抽奖会话
+        drawSessionManager.invalidate(participant.getActivityId());
 
         // 生成参会人员ID
         participant.setParticipantId(UUID.randomUUID().toString());
@@ -572,9 +977,8 @@ public class LotteryServiceImpl implements ILotteryService {
         }
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + participant.getActivityId());
-        }
+        lotteryDataCache.evict(participant.getActivityId(), Segment.ACTIVITY, Segment.PARTICIPANTS);
+        activityChangeLog.recordReload(participant.getActivityId());
         
         log.info("创建参会人员成功: participantId={}, name={}", 
                 participant.getParticipantId(), participant.getName());
@@ -591,14 +995,16 @@ public class LotteryServiceImpl implements ILotteryService {
 
         LotteryActivity activity = getAndCheckActivity(existing.getActivityId());
         ensureActivityNotCompleted(activity);
+        
+        // 先回写并失效抽奖会话
+        drawSessionManager.invalidate(existing.getActivityId());
 
         participant.setUpdatedAt(LocalDateTime.now());
         participantMapper.updateById(participant);
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + existing.getActivityId());
-        }
+        lotteryDataCache.evict(existing.getActivityId(), Segment.PARTICIPANTS);
+        activityChangeLog.recordReload(existing.getActivityId());
         
         log.info("更新参会人员成功: participantId={}", participant.getParticipantId());
         return participant;
@@ -614,6 +1020,11 @@ public class LotteryServiceImpl implements ILotteryService {
 
         LotteryActivity activity = getAndCheckActivity(participant.getActivityId());
         ensureActivityNotCompleted(activity);
+        
+        // 先回写并失效抽奖会话；回写了中奖记录时按最新数据校验
+        if (drawSessionManager.invalidate(participant.getActivityId())) {
+            participant = participantMapper.selectById(participantId);
+        }
 
         // 检查是否已中奖
         if (participant.getIsWinner()) {
@@ -632,9 +1043,8 @@ public class LotteryServiceImpl implements ILotteryService {
         }
         
         // 清除缓存
-        if (redisTemplate != null) {
-            redisTemplate.delete("lottery:" + activityId);
-        }
+        lotteryDataCache.evict(activityId, Segment.ACTIVITY, Segment.PARTICIPANTS);
+        activityChangeLog.recordReload(activityId);
         
         log.info("删除参会人员成功: participantId={}", participantId);
     }
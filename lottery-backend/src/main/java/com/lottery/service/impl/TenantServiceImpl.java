@@ -4,15 +4,22 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.IdUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.lottery.cache.TenantCacheManager;
 import com.lottery.common.exception.BizException;
 import com.lottery.common.util.BcryptUtil;
+import com.lottery.datasource.TenantRoutingDataSource;
 import com.lottery.entity.dto.RegisterDTO;
 import com.lottery.entity.po.Tenant;
 import com.lottery.entity.po.User;
+import com.lottery.entity.vo.TenantCacheStatsVO;
+import com.lottery.entity.vo.TenantMigrationProgressVO;
 import com.lottery.entity.vo.TenantVO;
 import com.lottery.mapper.TenantMapper;
 import com.lottery.mapper.UserMapper;
+import com.lottery.mybatis.TenantSchemaResolver;
 import com.lottery.service.ITenantService;
+import com.lottery.tenant.SpareSchemaProvisioner;
+import com.lottery.tenant.TenantMigrationRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
@@ -44,6 +51,22 @@ public class TenantServiceImpl implements ITenantService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
     
+    @Autowired
+    private TenantCacheManager tenantCacheManager;
+    
+    @Autowired
+    private TenantSchemaResolver tenantSchemaResolver;
+    
+    @Autowired
+    private SpareSchemaProvisioner spareSchemaProvisioner;
+    
+    @Autowired
+    private TenantMigrationRunner tenantMigrationRunner;
+    
+    /** 仅在开启租户专属连接池时存在 */
+    @Autowired(required = false)
+    private TenantRoutingDataSource tenantRoutingDataSource;
+    
     @Override
     @Transactional(rollbackFor = Exception.class)
     public TenantVO register(RegisterDTO registerDTO) {
@@ -75,9 +98,12 @@ public class TenantServiceImpl implements ITenantService {
         );
         
         log.info("租户创建成功: tenantId={}, tenantCode={}", tenantId, registerDTO.getTenantCode());
+        tenantSchemaResolver.invalidate(tenantId);
         
-        // 4. 创建租户 Schema
-        createTenantSchema(tenantId, schemaName);
+        // 4. 创建租户 Schema（优先认领预创建的备用 Schema）
+        if (!spareSchemaProvisioner.claim(schemaName)) {
+            createTenantSchema(tenantId, schemaName);
+        }
         
         // 5. 在租户 Schema 中创建管理员用户
         // 设置租户上下文，以便在正确的 schema 中插入用户
@@ -167,6 +193,9 @@ public class TenantServiceImpl implements ITenantService {
                 log.info("租户 Schema 初始化成功: {}", schemaName);
             }
             
+            // 模板已包含全部迁移，记为最新版本
+            tenantMigrationRunner.baseline(tenantId, schemaName);
+            
             // 4. 重置 search_path
             jdbcTemplate.execute("SET search_path TO public");
             
@@ -221,9 +250,12 @@ public class TenantServiceImpl implements ITenantService {
         tenant.setUpdatedAt(LocalDateTime.now());
         
         tenantMapper.insert(tenant);
+        tenantSchemaResolver.invalidate(tenantId);
         
-        // 创建租户Schema
-        createTenantSchema(tenantId, schemaName);
+        // 创建租户Schema（优先认领预创建的备用 Schema）
+        if (!spareSchemaProvisioner.claim(schemaName)) {
+            createTenantSchema(tenantId, schemaName);
+        }
         
         log.info("创建租户成功: tenantId={}, tenantName={}", tenantId, tenant.getTenantName());
         return tenant;
@@ -239,6 +271,12 @@ public class TenantServiceImpl implements ITenantService {
         
         tenant.setUpdatedAt(LocalDateTime.now());
         tenantMapper.updateById(tenant);
+        // Schema 名称可能变化，清除解析缓存
+        tenantSchemaResolver.invalidate(tenant.getTenantId());
+        // 套餐可能变化，专属连接池按新配置重建
+        evictTenantPool(tenant.getTenantId());
+        // 套餐或存储配额可能变化，重新计算本地缓存预算
+        tenantCacheManager.refreshBudget(tenant.getTenantId());
         
         log.info("更新租户成功: tenantId={}", tenant.getTenantId());
         return tenant;
@@ -312,10 +350,33 @@ public class TenantServiceImpl implements ITenantService {
         tenant.setStatus(status);
         tenant.setUpdatedAt(LocalDateTime.now());
         tenantMapper.updateById(tenant);
+        tenantSchemaResolver.invalidate(tenantId);
+        evictTenantPool(tenantId);
         
         log.info("更新租户状态成功: tenantId={}, status={}", tenantId, status);
         
         // 返回更新后的租户信息
         return BeanUtil.copyProperties(tenant, TenantVO.class);
     }
+    
+    @Override
+    public List<TenantCacheStatsVO> getCacheStats() {
+        return tenantCacheManager.stats();
+    }
+    
+    @Override
+    public TenantMigrationProgressVO startSchemaMigration() {
+        return tenantMigrationRunner.start();
+    }
+    
+    @Override
+    public TenantMigrationProgressVO getSchemaMigrationProgress() {
+        return tenantMigrationRunner.progress();
+    }
+    
+    private void evictTenantPool(String tenantId) {
+        if (tenantRoutingDataSource != null) {
+            tenantRoutingDataSource.evict(tenantId);
+        }
+    }
 }
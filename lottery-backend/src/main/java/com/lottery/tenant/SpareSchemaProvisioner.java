@@ -0,0 +1,190 @@
+package com.lottery.tenant;
+
+import cn.hutool.core.util.IdUtil;
+import com.lottery.common.context.TenantContext;
+import com.lottery.service.ITenantService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 备用租户 Schema 预创建
+ * 后台预先创建若干已执行初始化脚本的备用 Schema（spare_tenant_*），注册租户时在注册事务内
+ * 通过 ALTER SCHEMA ... RENAME 认领一个，不再在请求中执行建表脚本；认领后异步补足数量
+ * 备用 Schema 以数据库为准，多节点共享：认领时用事务级 advisory 锁避免两个注册认领同一个，
+ * 补充时用全局 advisory 锁保证同一时刻只有一个节点在创建
+ * 备用 Schema 与租户 Schema 一样由 TenantMigrationRunner 迁移，认领时跳过版本低于目标版本的备用 Schema
+ * 没有可用的备用 Schema 时退回同步创建
+ */
+@Slf4j
+@Component
+public class SpareSchemaProvisioner {
+    
+    /** 租户 Schema 均以 tenant_ 开头，备用 Schema 使用不同前缀，不会与租户代码生成的名称冲突 */
+    static final String SPARE_PREFIX = "spare_tenant_";
+    
+    /** 补充备用 Schema 的全局 advisory 锁 */
+    private static final long PROVISION_LOCK_KEY = 0x4C4F5454_53504152L;
+    
+    private static final String LIST_SPARES_SQL =
+            "SELECT nspname FROM pg_namespace WHERE nspname LIKE 'spare\\_tenant\\_%' ORDER BY nspname";
+    private static final String SCHEMA_EXISTS_SQL = "SELECT COUNT(*) FROM pg_namespace WHERE nspname = ?";
+    
+    @Value("${lottery.tenant.spare-schemas.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${lottery.tenant.spare-schemas.pool-size:3}")
+    private int poolSize;
+    
+    @Value("${lottery.tenant.spare-schemas.check-interval-seconds:60}")
+    private long checkIntervalSeconds;
+    
+    /** 复用租户 Schema 的创建逻辑；延迟注入避免循环依赖 */
+    @Lazy
+    @Autowired
+    private ITenantService tenantService;
+    
+    @Autowired
+    private TenantMigrationRunner tenantMigrationRunner;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private ScheduledExecutorService executor;
+    
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "spare-schema-provisioner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 定期检查，补足其他节点认领或启动时缺少的备用 Schema
+        executor.scheduleWithFixedDelay(this::replenish, 0, checkIntervalSeconds, TimeUnit.SECONDS);
+    }
+    
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * 在当前事务中认领一个备用 Schema 并重命名为租户 Schema，事务提交后异步补充
+     * 事务回滚时重命名一并撤销，备用 Schema 仍可被认领
+     *
+     * @param schemaName 租户 Schema 名称
+     * @return 是否认领成功；未启用、没有可用备用 Schema 或目标名称已存在时返回 false，由调用方同步创建
+     */
+    public boolean claim(String schemaName) {
+        if (!enabled) {
+            return false;
+        }
+        if (jdbcTemplate.queryForObject(SCHEMA_EXISTS_SQL, Long.class, schemaName) > 0) {
+            return false;
+        }
+        
+        for (String spare : jdbcTemplate.queryForList(LIST_SPARES_SQL, String.class)) {
+            // 其他注册正在认领的跳过；拿到锁后重新确认仍存在（可能刚被其他事务认领并提交）
+            Boolean locked = jdbcTemplate.queryForObject(
+                    "SELECT pg_try_advisory_xact_lock(hashtext(?))", Boolean.class, spare);
+            if (!Boolean.TRUE.equals(locked)
+                    || jdbcTemplate.queryForObject(SCHEMA_EXISTS_SQL, Long.class, spare) == 0) {
+                continue;
+            }
+            if (!tenantMigrationRunner.isUpToDate(spare)) {
+                // 创建后新增了迁移脚本，等待下一次迁移
+                log.warn("备用 Schema 未迁移到最新版本，跳过: {}", spare);
+                continue;
+            }
+            jdbcTemplate.execute("ALTER SCHEMA " + spare + " RENAME TO " + schemaName);
+            tenantMigrationRunner.renameSchema(spare, schemaName);
+            log.info("认领备用 Schema: {} -> {}", spare, schemaName);
+            replenishAfterCommit();
+            return true;
+        }
+        
+        log.warn("没有可用的备用 Schema，同步创建: schemaName={}", schemaName);
+        replenishAfterCommit();
+        return false;
+    }
+    
+    private void replenishAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    submitReplenish();
+                }
+            });
+        } else {
+            submitReplenish();
+        }
+    }
+    
+    private void submitReplenish() {
+        try {
+            executor.execute(this::replenish);
+        } catch (RejectedExecutionException e) {
+            log.warn("备用 Schema 补充任务提交失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 逐个创建备用 Schema 直到达到 pool-size；每个 Schema 在独立事务中创建，提交前对其他事务不可见
+     */
+    private void replenish() {
+        // 线程池线程可能继承了创建时请求的租户上下文
+        TenantContext.clear();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Boolean created = transaction.execute(status -> {
+                    Boolean locked = jdbcTemplate.queryForObject(
+                            "SELECT pg_try_advisory_xact_lock(?)", Boolean.class, PROVISION_LOCK_KEY);
+                    if (!Boolean.TRUE.equals(locked)) {
+                        // 其他节点正在补充
+                        return false;
+                    }
+                    List<String> spares = jdbcTemplate.queryForList(LIST_SPARES_SQL, String.class);
+                    if (spares.size() >= poolSize) {
+                        return false;
+                    }
+                    String spare = SPARE_PREFIX + IdUtil.fastSimpleUUID().substring(0, 16);
+                    long start = System.nanoTime();
+                    tenantService.createTenantSchema(null, spare);
+                    log.info("备用 Schema 创建完成: schemaName={}, spares={}, costMs={}", spare, spares.size() + 1,
+                            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    return true;
+                });
+                if (!Boolean.TRUE.equals(created)) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.warn("备用 Schema 补充失败: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.lottery.tenant;
+
+import cn.hutool.core.io.IoUtil;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.vo.TenantMigrationProgressVO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 租户 Schema 迁移
+ * 版本化脚本放在 classpath:db/migration/tenant/ 下，命名为 V{版本号}__{描述}.sql，脚本中的
+ * {SCHEMA_NAME}、{TENANT_ID} 替换为目标 Schema 与租户 ID；按 public.tenant_registry 逐个 Schema 执行，
+ * 备用 Schema（spare_tenant_*，尚未归属租户，{TENANT_ID} 替换为空）一并迁移，
+ * 每个脚本与版本记录（public.tenant_schema_version）在同一事务中提交
+ * 版本表由 db/schema/init_public_schema.sql 创建，启用迁移时缺少该表则启动失败
+ * 迁移使用独立的连接池（不经过 SearchPathFilter 与租户路由），并发度由 parallelism 控制；
+ * 失败的 Schema 记录错误后停止执行后续脚本，不影响其他 Schema，再次执行时从已记录的版本继续
+ * 新建的租户 Schema 由模板脚本创建，已包含全部迁移，创建时直接记为最新版本；
+ * 没有版本记录的存量 Schema 从头执行，因此脚本需可重复执行（IF NOT EXISTS 等）
+ * 同一时刻只允许一个节点执行迁移（advisory 锁），进度为执行节点的内存状态
+ */
+@Slf4j
+@Component
+public class TenantMigrationRunner {
+    
+    public static final String STATUS_IDLE = "IDLE";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+    public static final String STATUS_FAILED = "FAILED";
+    
+    private static final String SCRIPT_LOCATION = "classpath*:db/migration/tenant/V*__*.sql";
+    private static final Pattern SCRIPT_NAME = Pattern.compile("V(\\d+)__.+\\.sql");
+    
+    /** 迁移执行的全局 advisory 锁 */
+    private static final long MIGRATION_LOCK_KEY = 0x4C4F5454_4D494752L;
+    
+    private static final int MAX_REPORTED_FAILURES = 100;
+    
+    private static final String VERSION_TABLE_EXISTS_SQL =
+            "SELECT to_regclass('public.tenant_schema_version') IS NOT NULL";
+    /** 租户 Schema 与备用 Schema */
+    private static final String SELECT_TENANTS_SQL =
+            "SELECT tenant_id::text AS tenant_id, schema_name FROM public.tenant_registry " +
+            "UNION ALL SELECT NULL, nspname::varchar FROM pg_namespace WHERE nspname LIKE 'spare\\_tenant\\_%' " +
+            "ORDER BY schema_name";
+    private static final String SELECT_VERSIONS_SQL =
+            "SELECT schema_name, version FROM public.tenant_schema_version";
+    private static final String SELECT_VERSION_SQL =
+            "SELECT version FROM public.tenant_schema_version WHERE schema_name = ?";
+    private static final String COUNT_VERSIONS_SQL =
+            "SELECT version, COUNT(*) AS schemas FROM public.tenant_schema_version GROUP BY version ORDER BY version";
+    private static final String UPSERT_SUCCESS_SQL =
+            "INSERT INTO public.tenant_schema_version " +
+            "(schema_name, tenant_id, version, script, status, error_message, updated_at) " +
+            "VALUES (?, ?::uuid, ?, ?, 'SUCCESS', NULL, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (schema_name) DO UPDATE SET " +
+            "tenant_id = COALESCE(EXCLUDED.tenant_id, tenant_schema_version.tenant_id), " +
+            "version = EXCLUDED.version, script = EXCLUDED.script, status = EXCLUDED.status, " +
+            "error_message = NULL, updated_at = EXCLUDED.updated_at";
+    /** 失败时只更新状态，版本号保持为最后一次成功的版本 */
+    private static final String UPSERT_FAILED_SQL =
+            "INSERT INTO public.tenant_schema_version " +
+            "(schema_name, tenant_id, version, script, status, error_message, updated_at) " +
+            "VALUES (?, ?::uuid, ?, ?, 'FAILED', ?, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (schema_name) DO UPDATE SET " +
+            "tenant_id = COALESCE(EXCLUDED.tenant_id, tenant_schema_version.tenant_id), " +
+            "script = EXCLUDED.script, status = EXCLUDED.status, " +
+            "error_message = EXCLUDED.error_message, updated_at = EXCLUDED.updated_at";
+    private static final String RENAME_SQL =
+            "UPDATE public.tenant_schema_version SET schema_name = ? WHERE schema_name = ?";
+    
+    @Value("${lottery.tenant.migration.enabled:false}")
+    private boolean enabled;
+    
+    @Value("${lottery.tenant.migration.parallelism:8}")
+    private int parallelism;
+    
+    @Value("${lottery.tenant.migration.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+    
+    @Value("${lottery.tenant.migration.run-on-startup:false}")
+    private boolean runOnStartup;
+    
+    @Value("${spring.datasource.driver-class-name}")
+    private String driverClassName;
+    
+    @Value("${spring.datasource.url}")
+    private String url;
+    
+    @Value("${spring.datasource.username}")
+    private String username;
+    
+    @Value("${spring.datasource.password}")
+    private String password;
+    
+    /** 应用数据源，用于版本表的建表、基线记录与进度统计 */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    /** 按版本号排序的迁移脚本 */
+    private List<MigrationScript> scripts = List.of();
+    
+    private ExecutorService coordinator;
+    private ExecutorService workers;
+    
+    /** 本节点最近一次迁移 */
+    private volatile MigrationRun current;
+    
+    /**
+     * 迁移脚本
+     */
+    private static class MigrationScript {
+        final int version;
+        final String name;
+        final String sql;
+        
+        MigrationScript(int version, String name, String sql) {
+            this.version = version;
+            this.name = name;
+            this.sql = sql;
+        }
+        
+        String render(String schemaName, String tenantId) {
+            return sql.replace("{SCHEMA_NAME}", schemaName)
+                    .replace("{TENANT_ID}", tenantId != null ? tenantId : "");
+        }
+    }
+    
+    /**
+     * 一次迁移的执行状态
+     */
+    private static class MigrationRun {
+        final LocalDateTime startedAt = LocalDateTime.now();
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger migrated = new AtomicInteger();
+        final AtomicInteger upToDate = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final Map<String, String> failures = new ConcurrentHashMap<>();
+        volatile String status = STATUS_RUNNING;
+        volatile String message;
+        volatile LocalDateTime finishedAt;
+        
+        void recordFailure(String schemaName, String script, String error) {
+            failed.incrementAndGet();
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.put(schemaName, script + ": " + error);
+            }
+        }
+        
+        void finish(String status, String message) {
+            this.message = message;
+            this.status = status;
+            this.finishedAt = LocalDateTime.now();
+        }
+    }
+    
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(VERSION_TABLE_EXISTS_SQL, Boolean.class))) {
+            throw new IllegalStateException("缺少版本表 public.tenant_schema_version，请先执行 db/schema/init_public_schema.sql");
+        }
+        scripts = loadScripts();
+        coordinator = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "tenant-migration");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger sequence = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "tenant-migration-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("租户迁移脚本加载完成: scripts={}, targetVersion={}", scripts.size(), targetVersion());
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        if (coordinator != null) {
+            coordinator.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled || !runOnStartup || scripts.isEmpty()) {
+            return;
+        }
+        try {
+            start();
+        } catch (BizException e) {
+            log.warn("启动时执行租户迁移失败: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * 异步开始一次迁移
+     *
+     * @return 开始时的进度
+     */
+    public TenantMigrationProgressVO start() {
+        if (!enabled) {
+            throw new BizException("租户 Schema 迁移未启用");
+        }
+        if (scripts.isEmpty()) {
+            throw new BizException("没有租户迁移脚本");
+        }
+        MigrationRun run;
+        synchronized (this) {
+            if (current != null && STATUS_RUNNING.equals(current.status)) {
+                throw new BizException("租户 Schema 迁移正在执行");
+            }
+            run = new MigrationRun();
+            current = run;
+        }
+        coordinator.execute(() -> execute(run));
+        return progress();
+    }
+    
+    /**
+     * 本节点最近一次迁移的进度，以及版本表中各版本的 Schema 数量
+     */
+    public TenantMigrationProgressVO progress() {
+        TenantMigrationProgressVO vo = new TenantMigrationProgressVO();
+        vo.setTargetVersion(targetVersion());
+        MigrationRun run = current;
+        if (run == null) {
+            vo.setStatus(STATUS_IDLE);
+        } else {
+            vo.setStatus(run.status);
+            vo.setTotal(run.total.get());
+            vo.setMigrated(run.migrated.get());
+            vo.setUpToDate(run.upToDate.get());
+            vo.setFailed(run.failed.get());
+            vo.setRemaining(Math.max(0, run.total.get() - run.migrated.get() - run.upToDate.get() - run.failed.get()));
+            vo.setStartedAt(run.startedAt);
+            vo.setFinishedAt(run.finishedAt);
+            vo.setMessage(run.message);
+            vo.setFailures(new HashMap<>(run.failures));
+        }
+        if (enabled) {
+            Map<Integer, Long> versionCounts = new LinkedHashMap<>();
+            jdbcTemplate.query(COUNT_VERSIONS_SQL,
+                    (ResultSet rs) -> {
+                        versionCounts.put(rs.getInt("version"), rs.getLong("schemas"));
+                    });
+            vo.setVersionCounts(versionCounts);
+        }
+        return vo;
+    }
+    
+    /**
+     * 记录新建的 Schema 为最新版本（模板脚本已包含全部迁移），在创建 Schema 的事务中调用
+     */
+    public void baseline(String tenantId, String schemaName) {
+        if (!enabled || scripts.isEmpty()) {
+            return;
+        }
+        MigrationScript latest = scripts.get(scripts.size() - 1);
+        jdbcTemplate.update(UPSERT_SUCCESS_SQL, schemaName, tenantId, latest.version, latest.name);
+    }
+    
+    /**
+     * Schema 重命名后同步版本记录（认领备用 Schema）
+     */
+    public void renameSchema(String fromSchema, String toSchema) {
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.update(RENAME_SQL, toSchema, fromSchema);
+    }
+    
+    /**
+     * Schema 是否已是目标版本；认领备用 Schema 前检查，未迁移到最新的备用 Schema 不能直接使用
+     * 未启用迁移或没有脚本时视为最新
+     */
+    public boolean isUpToDate(String schemaName) {
+        if (!enabled || scripts.isEmpty()) {
+            return true;
+        }
+        List<Integer> versions = jdbcTemplate.queryForList(SELECT_VERSION_SQL, Integer.class, schemaName);
+        return !versions.isEmpty() && versions.get(0) >= targetVersion();
+    }
+    
+    private int targetVersion() {
+        return scripts.isEmpty() ? 0 : scripts.get(scripts.size() - 1).version;
+    }
+    
+    private void execute(MigrationRun run) {
+        DruidDataSource pool = createPool();
+        // 持有 advisory 锁的连接在整个迁移期间不归还，连接池关闭时释放锁
+        try (Connection lockConnection = pool.getConnection()) {
+            if (!tryLock(lockConnection)) {
+                run.finish(STATUS_FAILED, "其他节点正在执行租户 Schema 迁移");
+                return;
+            }
+            
+            JdbcTemplate jdbc = new JdbcTemplate(pool);
+            TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(pool));
+            Map<String, Integer> versions = new HashMap<>();
+            jdbc.query(SELECT_VERSIONS_SQL, (ResultSet rs) -> {
+                versions.put(rs.getString("schema_name"), rs.getInt("version"));
+            });
+            List<Map<String, Object>> tenants = jdbc.queryForList(SELECT_TENANTS_SQL);
+            run.total.set(tenants.size());
+            log.info("开始租户 Schema 迁移: schemas={}, targetVersion={}, parallelism={}",
+                    tenants.size(), targetVersion(), parallelism);
+            
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (Map<String, Object> tenant : tenants) {
+                String tenantId = (String) tenant.get("tenant_id");
+                String schemaName = (String) tenant.get("schema_name");
+                int version = versions.getOrDefault(schemaName, 0);
+                if (version >= targetVersion()) {
+                    run.upToDate.incrementAndGet();
+                    continue;
+                }
+                tasks.add(() -> {
+                    migrate(jdbc, transaction, run, tenantId, schemaName, version);
+                    return null;
+                });
+            }
+            workers.invokeAll(tasks);
+            
+            run.finish(run.failed.get() == 0 ? STATUS_COMPLETED : STATUS_FAILED, null);
+            log.info("租户 Schema 迁移结束: migrated={}, upToDate={}, failed={}",
+                    run.migrated.get(), run.upToDate.get(), run.failed.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish(STATUS_FAILED, "迁移被中断");
+        } catch (Exception e) {
+            log.error("租户 Schema 迁移失败", e);
+            run.finish(STATUS_FAILED, e.getMessage());
+        } finally {
+            pool.close();
+        }
+    }
+    
+    /**
+     * 依次执行高于当前版本的脚本，每个脚本一个事务；失败后记录错误并停止该 Schema 的后续脚本
+     */
+    private void migrate(JdbcTemplate jdbc, TransactionTemplate transaction, MigrationRun run,
+                         String tenantId, String schemaName, int fromVersion) {
+        for (MigrationScript script : scripts) {
+            if (script.version <= fromVersion) {
+                continue;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            try {
+                transaction.executeWithoutResult(status -> {
+                    // SET LOCAL 仅在当前事务内有效，连接归还时恢复默认值
+                    jdbc.execute("SET LOCAL search_path TO " + schemaName + ", public");
+                    if (lockTimeoutMs > 0) {
+                        jdbc.execute("SET LOCAL lock_timeout = " + lockTimeoutMs);
+                    }
+                    jdbc.execute(script.render(schemaName, tenantId));
+                    jdbc.update(UPSERT_SUCCESS_SQL, schemaName, tenantId, script.version, script.name);
+                });
+            } catch (Exception e) {
+                String error = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                log.warn("租户 Schema 迁移失败: schemaName={}, script={}, error={}", schemaName, script.name, error);
+                try {
+                    jdbc.update(UPSERT_FAILED_SQL, schemaName, tenantId, fromVersion, script.name, error);
+                } catch (Exception recordError) {
+                    log.warn("记录迁移失败状态失败: schemaName={}, error={}", schemaName, recordError.getMessage());
+                }
+                run.recordFailure(schemaName, script.name, error);
+                return;
+            }
+            fromVersion = script.version;
+        }
+        run.migrated.incrementAndGet();
+    }
+    
+    private boolean tryLock(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT pg_try_advisory_lock(" + MIGRATION_LOCK_KEY + ")")) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+    
+    /**
+     * 迁移专用连接池：并发执行的连接加上持有 advisory 锁的连接，迁移结束后关闭
+     */
+    private DruidDataSource createPool() {
+        DruidDataSource pool = new DruidDataSource();
+        pool.setName("tenant-migration");
+        pool.setDriverClassName(driverClassName);
+        pool.setUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setInitialSize(0);
+        pool.setMinIdle(0);
+        pool.setMaxActive(parallelism + 1);
+        pool.setValidationQuery("SELECT 1");
+        return pool;
+    }
+    
+    private List<MigrationScript> loadScripts() throws IOException {
+        Resource[] resources = new PathMatchingResourcePatternResolver().getResources(SCRIPT_LOCATION);
+        Map<Integer, MigrationScript> byVersion = new HashMap<>();
+        for (Resource resource : resources) {
+            String name = resource.getFilename();
+            Matcher matcher = SCRIPT_NAME.matcher(name != null ? name : "");
+            if (!matcher.matches()) {
+                continue;
+            }
+            int version = Integer.parseInt(matcher.group(1));
+            String sql;
+            try (InputStream inputStream = resource.getInputStream()) {
+                sql = IoUtil.read(inputStream, StandardCharsets.UTF_8);
+            }
+            MigrationScript existing = byVersion.put(version, new MigrationScript(version, name, sql));
+            if (existing != null) {
+                throw new IllegalStateException("租户迁移脚本版本重复: " + existing.name + ", " + name);
+            }
+        }
+        List<MigrationScript> sorted = new ArrayList<>(byVersion.values());
+        sorted.sort(Comparator.comparingInt(script -> script.version));
+        return List.copyOf(sorted);
+    }
+}
@@ -5,10 +5,9 @@
 ALTER TABLE lottery_activities 
 ADD COLUMN IF NOT EXISTS tenant_id VARCHAR(50);
 
--- 为现有数据设置默认的租户ID（假设现有数据都属于同一租户）
--- 注意：这里需要根据实际情况修改默认租户ID
+-- 为现有数据设置租户ID（{TENANT_ID} 由迁移程序替换为该 Schema 所属租户）
 UPDATE lottery_activities 
-SET tenant_id = 'default-tenant' 
+SET tenant_id = '{TENANT_ID}' 
 WHERE tenant_id IS NULL;
 
 -- 设置为NOT NULL约束
@@ -57,6 +57,25 @@ COMMENT ON COLUMN public.system_config.is_public IS '是否公开配置（可被
 
 -- =====================================================
 
+-- 创建租户 Schema 版本表
+CREATE TABLE IF NOT EXISTS public.tenant_schema_version (
+    schema_name VARCHAR(63) PRIMARY KEY,
+    tenant_id UUID,
+    version INTEGER NOT NULL DEFAULT 0,
+    script VARCHAR(255),
+    status VARCHAR(20) NOT NULL,
+    error_message TEXT,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 添加表注释
+COMMENT ON TABLE public.tenant_schema_version IS '租户 Schema 迁移版本表，记录每个租户 Schema 已执行的迁移脚本版本';
+COMMENT ON COLUMN public.tenant_schema_version.version IS '已成功执行的最大脚本版本号';
+COMMENT ON COLUMN public.tenant_schema_version.script IS '最近执行的脚本文件名';
+COMMENT ON COLUMN public.tenant_schema_version.status IS '最近一次执行状态：SUCCESS-成功, FAILED-失败';
+
+-- =====================================================
+
 -- 创建更新时间自动触发器函数
 CREATE OR REPLACE FUNCTION public.update_updated_at_column()
 RETURNS TRIGGER AS $$
@@ -0,0 +1,161 @@
+package com.lottery.benchmark;
+
+import com.lottery.cache.CompactRedisSerializer;
+import com.lottery.config.RedisConfig;
+import com.lottery.entity.vo.LotteryDataVO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis 值序列化基准测试
+ * 对比 GenericJackson2JsonRedisSerializer 与 CompactRedisSerializer（Smile + Deflate）处理抽奖数据的耗时，
+ * 序列化后的字节数在 Setup 阶段输出
+ * 运行：在 IDE 中执行 main 方法，或 mvn test-compile 后以测试 classpath 运行 org.openjdk.jmh.Main RedisSerializerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class RedisSerializerBenchmark {
+
+    /** 参与人员数量 */
+    @Param({"2000", "20000"})
+    private int participants;
+
+    /** 压缩阈值，0 表示不压缩 */
+    @Param({"0", "16384"})
+    private int compressionThreshold;
+
+    private GenericJackson2JsonRedisSerializer jsonSerializer;
+    private CompactRedisSerializer compactSerializer;
+
+    private LotteryDataVO data;
+    private byte[] jsonBytes;
+    private byte[] compactBytes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        jsonSerializer = new GenericJackson2JsonRedisSerializer();
+        compactSerializer = new CompactRedisSerializer(jsonSerializer, RedisConfig.COMPACT_TYPES, compressionThreshold);
+
+        data = buildLotteryData(participants, 10, participants / 20);
+        jsonBytes = jsonSerializer.serialize(data);
+        compactBytes = compactSerializer.serialize(data);
+        System.out.printf("%nparticipants=%d, threshold=%d, json=%d bytes, compact=%d bytes (%.1f%%)%n",
+            participants, compressionThreshold, jsonBytes.length, compactBytes.length,
+            compactBytes.length * 100.0 / jsonBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize(data);
+    }
+
+    @Benchmark
+    public Object jsonDeserialize() {
+        return jsonSerializer.deserialize(jsonBytes);
+    }
+
+    @Benchmark
+    public byte[] compactSerialize() {
+        return compactSerializer.serialize(data);
+    }
+
+    @Benchmark
+    public Object compactDeserialize() {
+        return compactSerializer.deserialize(compactBytes);
+    }
+
+    /**
+     * 构建接近真实规模的抽奖数据：中文姓名、部门、工号，奖项 prizeCount 个，中奖 winnerCount 人
+     */
+    private static LotteryDataVO buildLotteryData(int participantCount, int prizeCount, int winnerCount) {
+        Random random = new Random(42);
+        String[] surnames = {"张", "王", "李", "赵", "刘", "陈", "杨", "黄", "周", "吴"};
+        String[] departments = {"研发中心", "产品部", "市场部", "销售一部", "销售二部", "财务部", "人力资源部", "行政部"};
+
+        LotteryDataVO.ActivityInfo activity = new LotteryDataVO.ActivityInfo();
+        activity.setActivityId("5f0c6c9e-3b52-4c1e-9d1a-7f2b8e4a6d10");
+        activity.setActivityName("2025 年度年会抽奖");
+        activity.setStatus("ACTIVE");
+        activity.setTotalParticipants(participantCount);
+        activity.setTotalWinners(winnerCount);
+
+        List<LotteryDataVO.PrizeInfo> prizes = new ArrayList<>();
+        for (int i = 1; i <= prizeCount; i++) {
+            LotteryDataVO.PrizeInfo prize = new LotteryDataVO.PrizeInfo();
+            prize.setPrizeId("prize-" + i);
+            prize.setPrizeName(i + "等奖");
+            prize.setPrizeLevel(i);
+            prize.setGiftName("奖品 " + i);
+            prize.setGiftImageUrl("https://cdn.example.com/gifts/" + i + ".png");
+            prize.setTotalQuota(winnerCount / prizeCount);
+            prize.setDrawnCount(winnerCount / prizeCount);
+            prize.setDrawOrder(i);
+            prize.setStatus("COMPLETED");
+            prizes.add(prize);
+        }
+
+        List<LotteryDataVO.ParticipantInfo> participants = new ArrayList<>();
+        for (int i = 0; i < participantCount; i++) {
+            LotteryDataVO.ParticipantInfo participant = new LotteryDataVO.ParticipantInfo();
+            participant.setParticipantId(String.format("00000000-0000-4000-8000-%012d", i));
+            participant.setName(surnames[random.nextInt(surnames.length)] + "员工" + i);
+            participant.setEmployeeNo(String.format("E%06d", i));
+            participant.setDepartment(departments[random.nextInt(departments.length)]);
+            participant.setIsWinner(i < winnerCount);
+            participants.add(participant);
+        }
+
+        Map<String, List<LotteryDataVO.WinnerInfo>> winners = new LinkedHashMap<>();
+        for (int i = 0; i < winnerCount; i++) {
+            LotteryDataVO.PrizeInfo prize = prizes.get(i % prizeCount);
+            LotteryDataVO.ParticipantInfo participant = participants.get(i);
+            LotteryDataVO.WinnerInfo winner = new LotteryDataVO.WinnerInfo();
+            winner.setRecordId(String.format("10000000-0000-4000-8000-%012d", i));
+            winner.setParticipantId(participant.getParticipantId());
+            winner.setParticipantName(participant.getName());
+            winner.setPrizeName(prize.getPrizeName());
+            winner.setGiftName(prize.getGiftName());
+            winner.setDrawSequence(i + 1);
+            winners.computeIfAbsent(prize.getPrizeId(), key -> new ArrayList<>()).add(winner);
+        }
+
+        LotteryDataVO data = new LotteryDataVO();
+        data.setVersion(System.currentTimeMillis());
+        data.setActivity(activity);
+        data.setPrizes(prizes);
+        data.setParticipants(participants);
+        data.setWinners(winners);
+        return data;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(RedisSerializerBenchmark.class.getSimpleName())
+            .build()).run();
+    }
+}
@@ -0,0 +1,238 @@
+package com.lottery.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.lottery.config.RedisConfig;
+import com.lottery.entity.vo.LotteryDataVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CompactRedisSerializer 单元测试
+ */
+@DisplayName("紧凑 Redis 值序列化测试")
+public class CompactRedisSerializerTest {
+
+    private GenericJackson2JsonRedisSerializer fallback;
+    private CompactRedisSerializer serializer;
+
+    @BeforeEach
+    public void setUp() {
+        fallback = new GenericJackson2JsonRedisSerializer();
+        serializer = new CompactRedisSerializer(fallback, RedisConfig.COMPACT_TYPES, 16384);
+    }
+
+    @Test
+    @DisplayName("抽奖数据完整对象使用紧凑格式并可还原")
+    public void should_roundTrip_when_serializeLotteryData() {
+        LotteryDataVO data = buildLotteryData(3);
+        
+        byte[] bytes = serializer.serialize(data);
+        
+        assertEquals(CompactRedisSerializer.MAGIC, bytes[0]);
+        assertEquals(data, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("登记类型的列表按元素类型还原")
+    public void should_roundTripList_when_serializePrizeList() {
+        List<LotteryDataVO.PrizeInfo> prizes = buildLotteryData(0).getPrizes();
+        
+        byte[] bytes = serializer.serialize(prizes);
+        Object restored = serializer.deserialize(bytes);
+        
+        assertEquals(CompactRedisSerializer.MAGIC, bytes[0]);
+        assertInstanceOf(ArrayList.class, restored);
+        assertInstanceOf(LotteryDataVO.PrizeInfo.class, ((List<?>) restored).get(0));
+        assertEquals(prizes, restored);
+    }
+
+    @Test
+    @DisplayName("按奖项分组的中奖记录（String 键 Map 嵌套列表）可还原")
+    public void should_roundTripMap_when_serializeGroupedWinners() {
+        Map<String, List<LotteryDataVO.WinnerInfo>> winners = buildLotteryData(4).getWinners();
+        
+        byte[] bytes = serializer.serialize(winners);
+        Object restored = serializer.deserialize(bytes);
+        
+        assertEquals(CompactRedisSerializer.MAGIC, bytes[0]);
+        assertInstanceOf(LinkedHashMap.class, restored);
+        assertEquals(winners, restored);
+    }
+
+    @Test
+    @DisplayName("标量 Map 与 Set 使用紧凑格式并可还原")
+    public void should_roundTripScalars_when_serializeScalarMapAndSet() {
+        Map<String, Object> session = new LinkedHashMap<>();
+        session.put("userId", "user-1");
+        session.put("tenantId", "tenant-1");
+        session.put("loginCount", 3);
+        session.put("admin", true);
+        Set<String> ids = new LinkedHashSet<>(Arrays.asList("a", "b", "c"));
+        
+        byte[] sessionBytes = serializer.serialize(session);
+        byte[] idBytes = serializer.serialize(ids);
+        
+        assertEquals(CompactRedisSerializer.MAGIC, sessionBytes[0]);
+        assertEquals(session, serializer.deserialize(sessionBytes));
+        assertEquals(CompactRedisSerializer.MAGIC, idBytes[0]);
+        assertEquals(ids, serializer.deserialize(idBytes));
+    }
+
+    @Test
+    @DisplayName("负载超过阈值时压缩并可还原")
+    public void should_deflate_when_payloadExceedsThreshold() {
+        CompactRedisSerializer compressing = new CompactRedisSerializer(fallback, RedisConfig.COMPACT_TYPES, 256);
+        LotteryDataVO data = buildLotteryData(50);
+        
+        byte[] bytes = compressing.serialize(data);
+        
+        assertEquals(CompactRedisSerializer.FLAG_DEFLATED, bytes[1]);
+        assertEquals(data, compressing.deserialize(bytes));
+        assertEquals(data, serializer.deserialize(bytes));
+    }
+
+    @Test
+    @DisplayName("未登记类型交给兜底序列化器")
+    public void should_useFallback_when_typeNotRegistered() {
+        Map<Integer, String> unregistered = new LinkedHashMap<>();
+        unregistered.put(1, "one");
+        LotteryDataVO.PrizeInfo prize = buildLotteryData(0).getPrizes().get(0);
+        List<Object> mixed = new ArrayList<>(Arrays.asList(prize, "text"));
+        
+        byte[] mapBytes = serializer.serialize(unregistered);
+        byte[] mixedBytes = serializer.serialize(mixed);
+        
+        assertNotEquals(CompactRedisSerializer.MAGIC, mapBytes[0]);
+        assertNotEquals(CompactRedisSerializer.MAGIC, mixedBytes[0]);
+        assertArrayEquals(fallback.serialize(unregistered), mapBytes);
+    }
+
+    @Test
+    @DisplayName("兜底序列化器写入的历史数据可直接读取")
+    public void should_readLegacyJson_when_bytesWrittenByFallback() {
+        LotteryDataVO data = buildLotteryData(2);
+        
+        byte[] legacy = fallback.serialize(data);
+        
+        assertEquals(data, serializer.deserialize(legacy));
+    }
+
+    @Test
+    @DisplayName("空值与空字节")
+    public void should_handleNull_when_valueOrBytesEmpty() {
+        assertEquals(0, serializer.serialize(null).length);
+        assertNull(serializer.deserialize(null));
+        assertNull(serializer.deserialize(new byte[0]));
+    }
+
+    @Test
+    @DisplayName("类型描述为未登记的类时拒绝还原")
+    public void should_rejectType_when_descriptorNotAllowed() throws IOException {
+        byte[] forged = forge("java.net.URL", "{}");
+        
+        assertThrows(SerializationException.class, () -> serializer.deserialize(forged));
+    }
+
+    @Test
+    @DisplayName("集合元素类型为未登记的类时拒绝还原")
+    public void should_rejectType_when_containedTypeNotAllowed() throws IOException {
+        byte[] list = forge("java.util.ArrayList<java.io.File>", "[]");
+        byte[] map = forge("java.util.LinkedHashMap<java.lang.String,com.lottery.entity.po.Tenant>", "{}");
+        
+        assertThrows(SerializationException.class, () -> serializer.deserialize(list));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(map));
+    }
+
+    @Test
+    @DisplayName("集合实现类不在允许范围内时拒绝还原")
+    public void should_rejectType_when_collectionClassNotAllowed() throws IOException {
+        byte[] forged = forge("java.util.TreeSet<java.lang.String>", "[]");
+        
+        assertThrows(SerializationException.class, () -> serializer.deserialize(forged));
+    }
+
+    /**
+     * 按紧凑格式拼出任意类型描述的数据（负载为 Smile 编码的 JSON 文本）
+     */
+    private byte[] forge(String canonical, String json) throws IOException {
+        Object payload = new ObjectMapper().readValue(json, Object.class);
+        byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(payload);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeByte(CompactRedisSerializer.MAGIC);
+        data.writeByte(0);
+        data.writeUTF(canonical);
+        data.write(smile);
+        return out.toByteArray();
+    }
+
+    private LotteryDataVO buildLotteryData(int winnerCount) {
+        LotteryDataVO data = new LotteryDataVO();
+        data.setVersion(1700000000000L);
+        
+        LotteryDataVO.ActivityInfo activity = new LotteryDataVO.ActivityInfo();
+        activity.setActivityId("activity-1");
+        activity.setActivityName("年会抽奖");
+        activity.setStatus("ACTIVE");
+        activity.setTotalParticipants(winnerCount * 2);
+        activity.setTotalWinners(winnerCount);
+        data.setActivity(activity);
+        
+        List<LotteryDataVO.PrizeInfo> prizes = new ArrayList<>();
+        for (int i = 1; i <= 2; i++) {
+            LotteryDataVO.PrizeInfo prize = new LotteryDataVO.PrizeInfo();
+            prize.setPrizeId("prize-" + i);
+            prize.setPrizeName(i + "等奖");
+            prize.setPrizeLevel(i);
+            prize.setGiftName("礼品" + i);
+            prize.setTotalQuota(winnerCount);
+            prize.setDrawnCount(0);
+            prize.setDrawOrder(i);
+            prize.setStatus("ACTIVE");
+            prizes.add(prize);
+        }
+        data.setPrizes(prizes);
+        
+        List<LotteryDataVO.ParticipantInfo> participants = new ArrayList<>();
+        Map<String, List<LotteryDataVO.WinnerInfo>> winners = new LinkedHashMap<>();
+        for (int i = 0; i < winnerCount * 2; i++) {
+            LotteryDataVO.ParticipantInfo participant = new LotteryDataVO.ParticipantInfo();
+            participant.setParticipantId("participant-" + i);
+            participant.setName("人员" + i);
+            participant.setEmployeeNo("E" + i);
+            participant.setDepartment("部门" + (i % 3));
+            participant.setIsWinner(i < winnerCount);
+            participants.add(participant);
+            if (i < winnerCount) {
+                LotteryDataVO.WinnerInfo winner = new LotteryDataVO.WinnerInfo();
+                winner.setRecordId("record-" + i);
+                winner.setParticipantId(participant.getParticipantId());
+                winner.setParticipantName(participant.getName());
+                winner.setPrizeName(prizes.get(i % 2).getPrizeName());
+                winner.setGiftName(prizes.get(i % 2).getGiftName());
+                winner.setDrawSequence(i + 1);
+                winners.computeIfAbsent(prizes.get(i % 2).getPrizeId(), k -> new ArrayList<>()).add(winner);
+            }
+        }
+        data.setParticipants(participants);
+        data.setWinners(winners);
+        return data;
+    }
+}
@@ -0,0 +1,125 @@
+package com.lottery.cache;
+
+import com.lottery.common.context.TenantContext;
+import com.lottery.entity.po.LotteryActivity;
+import com.lottery.mapper.ActivityMapper;
+import com.lottery.mapper.TenantMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * LotteryDataCache 单元测试（L1 条目的加载版本）
+ */
+@DisplayName("抽奖数据分段缓存测试")
+public class LotteryDataCacheTest {
+
+    private static final String ACTIVITY_ID = "activity-1";
+    private static final String PRIZES_KEY = "lottery:tenant-1:activity-1:prizes";
+
+    private LotteryDataCache cache;
+    private RedisTemplate<String, Object> redisTemplate;
+    private ValueOperations<String, Object> valueOperations;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        TenantCacheManager tenantCacheManager = new TenantCacheManager();
+        ReflectionTestUtils.setField(tenantCacheManager, "budgetRatio", 0.05);
+        ReflectionTestUtils.setField(tenantCacheManager, "defaultQuotaMb", 1024L);
+        ReflectionTestUtils.setField(tenantCacheManager, "minBudgetMb", 8L);
+        ReflectionTestUtils.setField(tenantCacheManager, "maxBudgetMb", 256L);
+        ReflectionTestUtils.setField(tenantCacheManager, "totalBudgetMb", 1024L);
+        ReflectionTestUtils.setField(tenantCacheManager, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(tenantCacheManager, "tenantMapper", mock(TenantMapper.class));
+
+        LotteryActivity activity = new LotteryActivity();
+        activity.setActivityId(ACTIVITY_ID);
+        activity.setTenantId("tenant-1");
+        ActivityMapper activityMapper = mock(ActivityMapper.class);
+        when(activityMapper.selectById(ACTIVITY_ID)).thenReturn(activity);
+
+        redisTemplate = mock(RedisTemplate.class);
+        valueOperations = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        cache = new LotteryDataCache();
+        ReflectionTestUtils.setField(cache, "localMaxEntries", 800L);
+        ReflectionTestUtils.setField(cache, "trackingMaxEntries", 1000L);
+        ReflectionTestUtils.setField(cache, "redisTtlMinutes", 30L);
+        ReflectionTestUtils.setField(cache, "staleTtlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "rebuildLockTtlMillis", 5000L);
+        ReflectionTestUtils.setField(cache, "redisTemplate", redisTemplate);
+        ReflectionTestUtils.setField(cache, "tenantCacheManager", tenantCacheManager);
+        ReflectionTestUtils.setField(cache, "activityMapper", activityMapper);
+        cache.init();
+
+        TenantContext.setTenantId("tenant-1");
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("L1 条目的加载版本不早于本次读取的版本时直接命中")
+    public void should_hitLocal_when_entryLoadedAtSameVersion() {
+        cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 5L, loader("旧数据"));
+
+        LotteryDataCache.Lookup<String> lookup = cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 5L, loader("新数据"));
+
+        assertEquals("旧数据", lookup.getValue());
+        assertFalse(lookup.isStale());
+        assertEquals(1, loads.get());
+        verify(valueOperations, times(1)).get(PRIZES_KEY);
+    }
+
+    @Test
+    @DisplayName("读到更新的版本而 L1 条目加载于旧版本时从 L2 重新读取")
+    public void should_rereadRedis_when_entryLoadedAtOlderVersion() {
+        cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 5L, loader("旧数据"));
+        // 其他节点修改后已删除并重建 L2，本节点尚未收到失效消息
+        when(valueOperations.get(PRIZES_KEY)).thenReturn("新数据");
+
+        LotteryDataCache.Lookup<String> lookup = cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 6L, loader("数据库数据"));
+        LotteryDataCache.Lookup<String> again = cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 6L, loader("数据库数据"));
+
+        assertEquals("新数据", lookup.getValue());
+        assertFalse(lookup.isStale());
+        assertEquals("新数据", again.getValue());
+        assertEquals(1, loads.get());
+        verify(valueOperations, times(2)).get(PRIZES_KEY);
+    }
+
+    @Test
+    @DisplayName("不传版本时不检查 L1 条目的加载版本")
+    public void should_hitLocal_when_versionNotGiven() {
+        cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, 5L, loader("旧数据"));
+
+        LotteryDataCache.Lookup<String> lookup = cache.lookup(ACTIVITY_ID, LotteryDataCache.Segment.PRIZES, loader("新数据"));
+
+        assertEquals("旧数据", lookup.getValue());
+        verify(valueOperations, times(1)).get(anyString());
+    }
+
+    private Supplier<String> loader(String data) {
+        return () -> {
+            loads.incrementAndGet();
+            return data;
+        };
+    }
+}
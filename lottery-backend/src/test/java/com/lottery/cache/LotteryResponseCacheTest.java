@@ -0,0 +1,206 @@
+package com.lottery.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.lottery.common.context.TenantContext;
+import com.lottery.common.exception.BizException;
+import com.lottery.entity.vo.LotteryDataVO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LotteryResponseCache 单元测试
+ */
+@DisplayName("抽奖数据响应体缓存测试")
+public class LotteryResponseCacheTest {
+
+    private LotteryResponseCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new LotteryResponseCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1024L * 1024L);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 60L);
+        ReflectionTestUtils.setField(cache, "gzipMinBytes", 1024);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        cache.init();
+        loads = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TenantContext.clear();
+    }
+
+    @Test
+    @DisplayName("未命中时加载并序列化为 Result 包装的 JSON")
+    public void should_loadAndSerialize_when_cacheMiss() {
+        TenantContext.setTenantId("tenant-1");
+        
+        LotteryResponseCache.CachedResponse cached = cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        
+        assertEquals(1, loads.get());
+        String json = new String(cached.getRaw(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"code\":200"));
+        assertTrue(json.contains("活动一"));
+        assertNull(cached.getGzip());
+        assertFalse(cached.isStale());
+    }
+
+    @Test
+    @DisplayName("同一租户同一版本命中时不再加载")
+    public void should_returnCached_when_sameTenantAndVersion() {
+        TenantContext.setTenantId("tenant-1");
+        
+        LotteryResponseCache.CachedResponse first = cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        LotteryResponseCache.CachedResponse second = cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        
+        assertEquals(1, loads.get());
+        assertSame(first, second);
+    }
+
+    @Test
+    @DisplayName("版本变化时重新加载")
+    public void should_reload_when_versionChanged() {
+        TenantContext.setTenantId("tenant-1");
+        
+        cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        LotteryResponseCache.CachedResponse updated = cache.get("activity-1", 2L, loader(2L, "活动一（已更新）", 1));
+        
+        assertEquals(2, loads.get());
+        assertTrue(new String(updated.getRaw(), StandardCharsets.UTF_8).contains("活动一（已更新）"));
+    }
+
+    @Test
+    @DisplayName("其他租户请求同一活动时不命中本租户的缓存，并经过加载时的归属校验")
+    public void should_notServeOtherTenant_when_activityCachedForAnotherTenant() {
+        TenantContext.setTenantId("tenant-1");
+        cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        
+        TenantContext.setTenantId("tenant-2");
+        
+        BizException exception = assertThrows(BizException.class, () -> cache.get("activity-1", 1L, () -> {
+            loads.incrementAndGet();
+            throw new BizException(403, "无权访问该活动");
+        }));
+        assertEquals(403, exception.getCode());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("无租户上下文与有租户上下文的缓存互不复用")
+    public void should_separateEntries_when_tenantContextMissing() {
+        cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        
+        TenantContext.setTenantId("tenant-1");
+        cache.get("activity-1", 1L, loader(1L, "活动一", 1));
+        
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("重建期间的旧数据不缓存")
+    public void should_notCache_when_dataIsStale() {
+        TenantContext.setTenantId("tenant-1");
+        Supplier<LotteryDataVO> staleLoader = () -> {
+            loads.incrementAndGet();
+            LotteryDataVO data = new LotteryDataVO();
+            data.setStale(true);
+            return data;
+        };
+        
+        assertTrue(cache.get("activity-1", 1L, staleLoader).isStale());
+        cache.get("activity-1", 1L, staleLoader);
+        
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("数据版本与缓存键版本不一致时不缓存")
+    public void should_notCache_when_dataVersionDiffersFromKey() {
+        TenantContext.setTenantId("tenant-1");
+        
+        LotteryResponseCache.CachedResponse first = cache.get("activity-1", 1L, loader(2L, "活动一", 1));
+        cache.get("activity-1", 1L, loader(2L, "活动一", 1));
+        
+        assertFalse(first.isCurrent());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("请求接受 gzip 时写出压缩字节")
+    public void should_writeGzip_when_clientAcceptsGzip() throws IOException {
+        TenantContext.setTenantId("tenant-1");
+        LotteryResponseCache.CachedResponse cached = cache.get("activity-1", 1L, loader(1L, "活动一", 50));
+        assertNotNull(cached.getGzip());
+        MockHttpServletResponse gzipResponse = new MockHttpServletResponse();
+        MockHttpServletResponse plainResponse = new MockHttpServletResponse();
+        
+        cache.write(cached, "gzip, deflate, br", gzipResponse);
+        cache.write(cached, null, plainResponse);
+        
+        assertEquals("gzip", gzipResponse.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(HttpHeaders.ACCEPT_ENCODING, gzipResponse.getHeader(HttpHeaders.VARY));
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipResponse.getContentAsByteArray()))) {
+            assertArrayEquals(cached.getRaw(), in.readAllBytes());
+        }
+        assertNull(plainResponse.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertArrayEquals(cached.getRaw(), plainResponse.getContentAsByteArray());
+    }
+
+    @Test
+    @DisplayName("Accept-Encoding 解析：gzip、通配符与 q 值")
+    public void should_parseAcceptEncoding_when_checkAcceptsGzip() {
+        assertTrue(LotteryResponseCache.acceptsGzip("gzip"));
+        assertTrue(LotteryResponseCache.acceptsGzip("GZIP"));
+        assertTrue(LotteryResponseCache.acceptsGzip("deflate, gzip;q=0.8"));
+        assertTrue(LotteryResponseCache.acceptsGzip("*"));
+        assertTrue(LotteryResponseCache.acceptsGzip("gzip;q=0.001"));
+        assertTrue(LotteryResponseCache.acceptsGzip("gzip;q=0, *;q=0.5"));
+        
+        assertFalse(LotteryResponseCache.acceptsGzip(null));
+        assertFalse(LotteryResponseCache.acceptsGzip(""));
+        assertFalse(LotteryResponseCache.acceptsGzip("deflate, br"));
+        assertFalse(LotteryResponseCache.acceptsGzip("gzip;q=0"));
+        assertFalse(LotteryResponseCache.acceptsGzip("gzip; q=0.000"));
+        assertFalse(LotteryResponseCache.acceptsGzip("x-gzip"));
+    }
+
+    private Supplier<LotteryDataVO> loader(long version, String activityName, int participantCount) {
+        return () -> {
+            loads.incrementAndGet();
+            LotteryDataVO data = new LotteryDataVO();
+            data.setVersion(version);
+            LotteryDataVO.ActivityInfo activity = new LotteryDataVO.ActivityInfo();
+            activity.setActivityId("activity-1");
+            activity.setActivityName(activityName);
+            data.setActivity(activity);
+            List<LotteryDataVO.ParticipantInfo> participants = new ArrayList<>();
+            for (int i = 0; i < participantCount; i++) {
+                LotteryDataVO.ParticipantInfo participant = new LotteryDataVO.ParticipantInfo();
+                participant.setParticipantId("participant-" + i);
+                participant.setName("人员" + i);
+                participants.add(participant);
+            }
+            data.setParticipants(participants);
+            return data;
+        };
+    }
+}
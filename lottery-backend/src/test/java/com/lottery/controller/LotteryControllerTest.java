@@ -5,6 +5,8 @@ import com.lottery.entity.po.LotteryActivity;
 import com.lottery.entity.po.Participant;
 import com.lottery.entity.po.Prize;
 import com.lottery.entity.vo.LotteryDataVO;
+import com.lottery.entity.vo.LotteryDeltaVO;
+import com.lottery.entity.vo.LotteryResetVO;
 import com.lottery.entity.vo.WinnerVO;
 import com.lottery.service.ILotteryService;
 import com.lottery.util.TestDataBuilder;
@@ -19,6 +21,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -66,6 +69,54 @@ public class LotteryControllerTest extends BaseControllerTest {
         verify(lotteryService, times(1)).getLotteryData(activityId);
     }
 
+    @Test
+    @DisplayName("获取抽奖数据增量成功 - 携带 sinceVersion")
+    public void should_returnDelta_when_getDataWithSinceVersion() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        LotteryDeltaVO delta = new LotteryDeltaVO();
+        delta.setActivityId(activityId);
+        delta.setSinceVersion(100L);
+        delta.setVersion(102L);
+        delta.setFullReload(false);
+        LotteryDataVO.WinnerInfo winner = new LotteryDataVO.WinnerInfo();
+        winner.setParticipantName("张三");
+        delta.setWinners(Arrays.asList(winner));
+        delta.setPrizes(new ArrayList<>());
+        delta.setParticipants(new ArrayList<>());
+        
+        when(lotteryService.getLotteryDelta(activityId, 100L)).thenReturn(delta);
+
+        // 执行测试
+        mockMvc.perform(get("/lottery/activities/{activityId}/data", activityId)
+                .param("sinceVersion", "100"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.version").value(102))
+                .andExpect(jsonPath("$.data.fullReload").value(false))
+                .andExpect(jsonPath("$.data.winners[0].participantName").value("张三"));
+
+        verify(lotteryService, times(1)).getLotteryDelta(activityId, 100L);
+        verify(lotteryService, never()).getLotteryData(anyString());
+    }
+
+    @Test
+    @DisplayName("获取抽奖初始化数据 - If-None-Match 命中时返回 304")
+    public void should_returnNotModified_when_getDataWithMatchingEtag() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        
+        when(lotteryService.getDataVersion(activityId)).thenReturn(5L);
+
+        // 执行测试
+        mockMvc.perform(get("/lottery/activities/{activityId}/data", activityId)
+                .header("If-None-Match", "\"v5\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"v5\""));
+
+        verify(lotteryService, never()).getLotteryData(anyString());
+    }
+
     @Test
     @DisplayName("获取抽奖初始化数据失败 - 活动不存在")
     public void should_returnNotFound_when_getDataWithNonExistentActivityId() throws Exception {
@@ -152,6 +203,190 @@ public class LotteryControllerTest extends BaseControllerTest {
         verify(lotteryService, times(1)).saveWinner(any(WinnerSaveDTO.class));
     }
 
+    @Test
+    @DisplayName("批量保存中奖记录成功 - 多条中奖信息")
+    public void should_returnWinnerRecords_when_saveWinnersBatch() throws Exception {
+        // 准备测试数据
+        List<WinnerSaveDTO> winnerDTOs = Arrays.asList(
+            TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-2", "participant-1-1-1"),
+            TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-2", "participant-1-1-2")
+        );
+        
+        when(lotteryService.saveWinners(anyList())).thenReturn(Arrays.asList(new WinnerVO(), new WinnerVO()));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/winners/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(toJson(winnerDTOs)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.length()").value(2));
+
+        verify(lotteryService, times(1)).saveWinners(anyList());
+    }
+
+    @Test
+    @DisplayName("批量保存中奖记录失败 - 奖项名额不足")
+    public void should_returnError_when_saveWinnersBatchExceedsQuota() throws Exception {
+        // 准备测试数据
+        List<WinnerSaveDTO> winnerDTOs = Arrays.asList(
+            TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-1", "participant-1-1-1"),
+            TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-1", "participant-1-1-2")
+        );
+        
+        when(lotteryService.saveWinners(anyList()))
+            .thenThrow(new com.lottery.common.exception.BizException("该奖项名额已满: 特等奖"));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/winners/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(toJson(winnerDTOs)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(500))
+                .andExpect(jsonPath("$.message").value("该奖项名额已满: 特等奖"));
+
+        verify(lotteryService, times(1)).saveWinners(anyList());
+    }
+
+    @Test
+    @DisplayName("批量保存中奖记录 - 相同 Idempotency-Key 重试返回首次结果")
+    public void should_returnStoredResult_when_saveWinnersRetriedWithSameIdempotencyKey() throws Exception {
+        // 准备测试数据
+        List<WinnerSaveDTO> winnerDTOs = Arrays.asList(
+            TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-2", "participant-1-1-1")
+        );
+        WinnerVO winner = new WinnerVO();
+        winner.setParticipantName("张三");
+        
+        when(lotteryService.saveWinners(anyList())).thenReturn(Arrays.asList(winner));
+
+        // 执行测试：同一幂等键提交两次
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(post("/lottery/winners/batch")
+                    .header("Idempotency-Key", "retry-key-1")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(toJson(winnerDTOs)))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.code").value(200))
+                    .andExpect(jsonPath("$.data[0].participantName").value("张三"));
+        }
+
+        verify(lotteryService, times(1)).saveWinners(anyList());
+    }
+
+    @Test
+    @DisplayName("批量保存中奖记录失败 - Idempotency-Key 用于不同请求")
+    public void should_returnError_when_idempotencyKeyReusedWithDifferentPayload() throws Exception {
+        // 准备测试数据
+        when(lotteryService.saveWinners(anyList())).thenReturn(Arrays.asList(new WinnerVO()));
+
+        mockMvc.perform(post("/lottery/winners/batch")
+                .header("Idempotency-Key", "retry-key-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(toJson(Arrays.asList(
+                    TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-2", "participant-1-1-1")))))
+                .andExpect(jsonPath("$.code").value(200));
+
+        // 执行测试：同一幂等键提交不同的中奖人员
+        mockMvc.perform(post("/lottery/winners/batch")
+                .header("Idempotency-Key", "retry-key-2")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(toJson(Arrays.asList(
+                    TestDataBuilder.buildWinnerSaveDTO("activity-1-1", "prize-1-1-2", "participant-1-1-2")))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(500))
+                .andExpect(jsonPath("$.message").value("参数不合法：Idempotency-Key 已被其他请求使用"));
+
+        verify(lotteryService, times(1)).saveWinners(anyList());
+    }
+
+    @Test
+    @DisplayName("服务端抽奖成功 - 指定抽取人数")
+    public void should_returnDrawnWinners_when_drawWinnersWithValidCount() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        String prizeId = "prize-1-1-2";
+        
+        WinnerVO first = new WinnerVO();
+        first.setParticipantName("张三");
+        WinnerVO second = new WinnerVO();
+        second.setParticipantName("李四");
+        
+        when(lotteryService.drawWinners(activityId, prizeId, 2)).thenReturn(Arrays.asList(first, second));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/activities/{activityId}/prizes/{prizeId}/draw", activityId, prizeId)
+                .param("count", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].participantName").value("张三"));
+
+        verify(lotteryService, times(1)).drawWinners(activityId, prizeId, 2);
+    }
+
+    @Test
+    @DisplayName("服务端抽奖失败 - 超过奖项剩余名额")
+    public void should_returnError_when_drawWinnersExceedsRemainingQuota() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        String prizeId = "prize-1-1-1";
+        
+        when(lotteryService.drawWinners(activityId, prizeId, 5))
+            .thenThrow(new com.lottery.common.exception.BizException("抽取人数超过奖项剩余名额"));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/activities/{activityId}/prizes/{prizeId}/draw", activityId, prizeId)
+                .param("count", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(500))
+                .andExpect(jsonPath("$.message").value("抽取人数超过奖项剩余名额"));
+
+        verify(lotteryService, times(1)).drawWinners(activityId, prizeId, 5);
+    }
+
+    @Test
+    @DisplayName("整场抽奖成功 - 一次抽完所有奖项")
+    public void should_returnAllWinners_when_drawAllWithRemainingQuota() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        
+        WinnerVO first = new WinnerVO();
+        first.setPrizeName("特等奖");
+        WinnerVO second = new WinnerVO();
+        second.setPrizeName("一等奖");
+        
+        when(lotteryService.drawAll(activityId)).thenReturn(Arrays.asList(first, second));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/activities/{activityId}/draw-all", activityId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.length()").value(2))
+                .andExpect(jsonPath("$.data[0].prizeName").value("特等奖"))
+                .andExpect(jsonPath("$.data[1].prizeName").value("一等奖"));
+
+        verify(lotteryService, times(1)).drawAll(activityId);
+    }
+
+    @Test
+    @DisplayName("整场抽奖失败 - 未中奖人员不足")
+    public void should_returnError_when_drawAllWithInsufficientParticipants() throws Exception {
+        // 准备测试数据
+        String activityId = "activity-1-1";
+        
+        when(lotteryService.drawAll(activityId))
+            .thenThrow(new com.lottery.common.exception.BizException("未中奖人员不足，无法抽取全部奖项"));
+
+        // 执行测试
+        mockMvc.perform(post("/lottery/activities/{activityId}/draw-all", activityId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(500))
+                .andExpect(jsonPath("$.message").value("未中奖人员不足，无法抽取全部奖项"));
+
+        verify(lotteryService, times(1)).drawAll(activityId);
+    }
+
     @Test
     @DisplayName("查询中奖记录列表成功 - 存在的活动ID")
     public void should_returnWinnerList_when_getWinnersWithValidActivityId() throws Exception {
@@ -194,13 +429,21 @@ public class LotteryControllerTest extends BaseControllerTest {
     public void should_returnSuccess_when_resetLotteryWithValidActivityId() throws Exception {
         // 准备测试数据
         String activityId = "activity-1-1";
+        LotteryResetVO resetVO = new LotteryResetVO();
+        resetVO.setActivityId(activityId);
+        resetVO.setDeletedWinners(3);
+        resetVO.setResetParticipants(3);
+        resetVO.setResetPrizes(2);
         
-        doNothing().when(lotteryService).resetLottery(activityId);
+        when(lotteryService.resetLottery(activityId)).thenReturn(resetVO);
 
         // 执行测试
         mockMvc.perform(post("/lottery/activities/{activityId}/reset", activityId))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.code").value(200));
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.deletedWinners").value(3))
+                .andExpect(jsonPath("$.data.resetParticipants").value(3))
+                .andExpect(jsonPath("$.data.resetPrizes").value(2));
 
         verify(lotteryService, times(1)).resetLottery(activityId);
     }
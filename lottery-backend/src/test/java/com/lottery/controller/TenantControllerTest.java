@@ -1,6 +1,8 @@
 package com.lottery.controller;
 
 import com.lottery.entity.po.Tenant;
+import com.lottery.entity.vo.TenantCacheStatsVO;
+import com.lottery.entity.vo.TenantMigrationProgressVO;
 import com.lottery.service.ITenantService;
 import com.lottery.util.TestDataBuilder;
 import org.junit.jupiter.api.DisplayName;
@@ -189,4 +191,54 @@ public class TenantControllerTest extends BaseControllerTest {
 
         verify(tenantService, times(1)).updateTenant(any(Tenant.class));
     }
+
+    @Test
+    @DisplayName("获取租户缓存统计成功")
+    public void should_returnCacheStats_when_getCacheStats() throws Exception {
+        // 准备测试数据
+        TenantCacheStatsVO stats = new TenantCacheStatsVO();
+        stats.setTenantId("tenant-1");
+        stats.setBudgetBytes(52428800L);
+        stats.setUsedBytes(1048576L);
+        stats.setHitRate(0.95);
+        
+        when(tenantService.getCacheStats()).thenReturn(Arrays.asList(stats));
+
+        // 执行测试
+        mockMvc.perform(get("/admin/tenants/cache-stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data[0].tenantId").value("tenant-1"))
+                .andExpect(jsonPath("$.data[0].budgetBytes").value(52428800))
+                .andExpect(jsonPath("$.data[0].hitRate").value(0.95));
+
+        verify(tenantService, times(1)).getCacheStats();
+        verify(tenantService, never()).getTenantDetail(anyString());
+    }
+
+    @Test
+    @DisplayName("获取租户 Schema 迁移进度成功")
+    public void should_returnMigrationProgress_when_getSchemaMigrationProgress() throws Exception {
+        // 准备测试数据
+        TenantMigrationProgressVO progress = new TenantMigrationProgressVO();
+        progress.setStatus("RUNNING");
+        progress.setTargetVersion(2);
+        progress.setTotal(1000);
+        progress.setMigrated(400);
+        progress.setFailed(1);
+        
+        when(tenantService.getSchemaMigrationProgress()).thenReturn(progress);
+
+        // 执行测试
+        mockMvc.perform(get("/admin/tenants/migrations/progress"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.status").value("RUNNING"))
+                .andExpect(jsonPath("$.data.targetVersion").value(2))
+                .andExpect(jsonPath("$.data.migrated").value(400))
+                .andExpect(jsonPath("$.data.failed").value(1));
+
+        verify(tenantService, times(1)).getSchemaMigrationProgress();
+        verify(tenantService, never()).startSchemaMigration();
+    }
 }
@@ -0,0 +1,176 @@
+package com.lottery.mybatis;
+
+import com.baomidou.mybatisplus.core.exceptions.MybatisPlusException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SchemaQualifyInnerInterceptor.rewrite 单元测试
+ */
+@DisplayName("Schema 限定改写测试")
+public class SchemaQualifyInnerInterceptorTest {
+
+    private static final Set<String> TENANT_TABLES = Set.of(
+        "users", "lottery_activities", "prizes", "participants", "winner_records", "operation_logs");
+
+    private SchemaQualifyInnerInterceptor interceptor;
+
+    @BeforeEach
+    public void setUp() {
+        interceptor = new SchemaQualifyInnerInterceptor(null, TENANT_TABLES, 100);
+    }
+
+    @Test
+    @DisplayName("单表查询限定租户 Schema")
+    public void should_qualifyTable_when_selectSingleTable() {
+        String sql = "SELECT prize_id, prize_name FROM prizes WHERE activity_id = ?";
+        
+        assertEquals("SELECT prize_id, prize_name FROM tenant_a.prizes WHERE activity_id = ?",
+                interceptor.rewrite(sql, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("表名大小写不敏感")
+    public void should_qualifyTable_when_tableNameUpperCase() {
+        String sql = "SELECT * FROM PRIZES WHERE prize_id = ?";
+        
+        assertEquals("SELECT * FROM tenant_a.PRIZES WHERE prize_id = ?", interceptor.rewrite(sql, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("关联查询的每张租户表都限定 Schema")
+    public void should_qualifyAllTables_when_selectWithJoins() {
+        String sql = "SELECT w.record_id, p.prize_name, pa.name FROM winner_records w "
+                + "INNER JOIN prizes p ON w.prize_id = p.prize_id "
+                + "LEFT JOIN participants pa ON w.participant_id = pa.participant_id "
+                + "WHERE w.activity_id = ? ORDER BY w.draw_sequence";
+        
+        assertEquals("SELECT w.record_id, p.prize_name, pa.name FROM tenant_a.winner_records w "
+                + "INNER JOIN tenant_a.prizes p ON w.prize_id = p.prize_id "
+                + "LEFT JOIN tenant_a.participants pa ON w.participant_id = pa.participant_id "
+                + "WHERE w.activity_id = ? ORDER BY w.draw_sequence",
+                interceptor.rewrite(sql, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("WHERE、FROM 与 EXISTS 子查询中的租户表限定 Schema")
+    public void should_qualifySubqueryTables_when_selectWithSubqueries() {
+        String inSubquery = "SELECT * FROM participants WHERE activity_id = ? AND participant_id NOT IN "
+                + "(SELECT participant_id FROM winner_records WHERE activity_id = ?)";
+        String fromSubquery = "SELECT t.prize_id, t.cnt FROM (SELECT prize_id, COUNT(*) AS cnt FROM winner_records "
+                + "GROUP BY prize_id) t";
+        String existsSubquery = "SELECT * FROM prizes p WHERE EXISTS "
+                + "(SELECT 1 FROM winner_records w WHERE w.prize_id = p.prize_id)";
+        
+        assertEquals("SELECT * FROM tenant_a.participants WHERE activity_id = ? AND participant_id NOT IN "
+                + "(SELECT participant_id FROM tenant_a.winner_records WHERE activity_id = ?)",
+                interceptor.rewrite(inSubquery, "tenant_a"));
+        assertEquals("SELECT t.prize_id, t.cnt FROM (SELECT prize_id, COUNT(*) AS cnt FROM tenant_a.winner_records "
+                + "GROUP BY prize_id) t",
+                interceptor.rewrite(fromSubquery, "tenant_a"));
+        assertEquals("SELECT * FROM tenant_a.prizes p WHERE EXISTS "
+                + "(SELECT 1 FROM tenant_a.winner_records w WHERE w.prize_id = p.prize_id)",
+                interceptor.rewrite(existsSubquery, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("CTE 名称不改写，CTE 内的租户表限定 Schema")
+    public void should_keepCteName_when_selectWithCte() {
+        String sql = "WITH drawn AS (SELECT prize_id FROM winner_records) SELECT * FROM drawn";
+        
+        assertEquals("WITH drawn AS (SELECT prize_id FROM tenant_a.winner_records) SELECT * FROM drawn",
+                interceptor.rewrite(sql, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("已限定 Schema 的表保持不变")
+    public void should_keepSchema_when_tableAlreadyQualified() {
+        String publicTable = "SELECT * FROM public.tenant_registry WHERE tenant_id = ?";
+        String otherSchema = "SELECT * FROM tenant_b.prizes WHERE prize_id = ?";
+        String mixed = "SELECT p.prize_name FROM tenant_b.prizes p JOIN participants pa ON p.activity_id = pa.activity_id";
+        
+        assertSame(publicTable, interceptor.rewrite(publicTable, "tenant_a"));
+        assertSame(otherSchema, interceptor.rewrite(otherSchema, "tenant_a"));
+        assertEquals("SELECT p.prize_name FROM tenant_b.prizes p JOIN tenant_a.participants pa ON p.activity_id = pa.activity_id",
+                interceptor.rewrite(mixed, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("不含租户表的语句返回原 SQL")
+    public void should_returnOriginal_when_noTenantTable() {
+        String sql = "SELECT tenant_id, schema_name FROM tenant_registry WHERE status = ?";
+        
+        assertSame(sql, interceptor.rewrite(sql, "tenant_a"));
+        assertSame(sql, interceptor.rewrite(sql, "tenant_b"));
+    }
+
+    @Test
+    @DisplayName("INSERT 语句限定目标表及 SELECT 来源表")
+    public void should_qualifyTables_when_insert() {
+        String values = "INSERT INTO winner_records (record_id, activity_id, prize_id) VALUES (?, ?, ?)";
+        String select = "INSERT INTO operation_logs (log_id, operation_type) "
+                + "SELECT record_id, 'DRAW' FROM winner_records WHERE activity_id = ?";
+        
+        assertEquals("INSERT INTO tenant_a.winner_records (record_id, activity_id, prize_id) VALUES (?, ?, ?)",
+                interceptor.rewrite(values, "tenant_a"));
+        assertEquals("INSERT INTO tenant_a.operation_logs (log_id, operation_type) "
+                + "SELECT record_id, 'DRAW' FROM tenant_a.winner_records WHERE activity_id = ?",
+                interceptor.rewrite(select, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("UPDATE 语句限定目标表及子查询中的表")
+    public void should_qualifyTables_when_update() {
+        String simple = "UPDATE prizes SET drawn_count = drawn_count + 1 WHERE prize_id = ?";
+        String subquery = "UPDATE participants SET is_winner = true WHERE participant_id IN "
+                + "(SELECT participant_id FROM winner_records WHERE activity_id = ?)";
+        
+        assertEquals("UPDATE tenant_a.prizes SET drawn_count = drawn_count + 1 WHERE prize_id = ?",
+                interceptor.rewrite(simple, "tenant_a"));
+        assertEquals("UPDATE tenant_a.participants SET is_winner = true WHERE participant_id IN "
+                + "(SELECT participant_id FROM tenant_a.winner_records WHERE activity_id = ?)",
+                interceptor.rewrite(subquery, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("DELETE 语句限定目标表及子查询中的表")
+    public void should_qualifyTables_when_delete() {
+        String simple = "DELETE FROM winner_records WHERE activity_id = ?";
+        String subquery = "DELETE FROM participants WHERE activity_id = ? AND participant_id NOT IN "
+                + "(SELECT participant_id FROM winner_records)";
+        
+        assertEquals("DELETE FROM tenant_a.winner_records WHERE activity_id = ?",
+                interceptor.rewrite(simple, "tenant_a"));
+        assertEquals("DELETE FROM tenant_a.participants WHERE activity_id = ? AND participant_id NOT IN "
+                + "(SELECT participant_id FROM tenant_a.winner_records)",
+                interceptor.rewrite(subquery, "tenant_a"));
+    }
+
+    @Test
+    @DisplayName("同一语句的模板按租户替换 Schema")
+    public void should_reuseTemplate_when_differentTenants() {
+        String sql = "SELECT * FROM prizes WHERE prize_id = ?";
+        
+        assertEquals("SELECT * FROM tenant_a.prizes WHERE prize_id = ?", interceptor.rewrite(sql, "tenant_a"));
+        assertEquals("SELECT * FROM tenant_b.prizes WHERE prize_id = ?", interceptor.rewrite(sql, "tenant_b"));
+    }
+
+    @Test
+    @DisplayName("Schema 为空时返回原 SQL")
+    public void should_returnOriginal_when_schemaNull() {
+        String sql = "SELECT * FROM prizes";
+        
+        assertSame(sql, interceptor.rewrite(sql, null));
+    }
+
+    @Test
+    @DisplayName("无法解析的 SQL 直接失败")
+    public void should_throw_when_sqlUnparsable() {
+        assertThrows(MybatisPlusException.class, () -> interceptor.rewrite("SELECT FROM WHERE prizes", "tenant_a"));
+    }
+}